@@ -0,0 +1,306 @@
+/*
+ * Copyright (C) 2004 Derek James and Philip Tucker
+ *
+ * This file is part of ANJI (Another NEAT Java Implementation).
+ *
+ * ANJI is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See
+ * the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ */
+package com.anji.activationFunction;
+
+/**
+ * Approximations of the transcendental activation functions, for callers whose results are
+ * quantized coarsely enough that full double precision is wasted. Gaussian, sigmoid, tanh,
+ * sine and cosine (and their bipolar and unsigned variants) are approximated; every other
+ * function is evaluated exactly.
+ * <ul>
+ * <li><code>TABLE</code>: linear interpolation in 4096-entry tables of
+ * <code>exp(-x*x)</code> over [0, 6], the sigmoid over [-20, 20] and <code>sin</code> over one
+ * period. Maximum absolute error 3e-7 for sigmoid, sine and cosine, 6e-7 for gaussian, tanh
+ * and the bipolar sigmoid, 1.1e-6 for the bipolar gaussian.</li>
+ * <li><code>POLY</code>: <code>exp</code> by reduction to <code>2^k * exp(r)</code>,
+ * <code>|r| &lt;= ln(2)/2</code>, and a degree 7 polynomial; <code>sin</code> by reduction to
+ * [-pi/2, pi/2] and a degree 13 polynomial. Maximum absolute error 1e-8 for all functions.</li>
+ * </ul>
+ * Both fall back to <code>Math</code> for arguments beyond +/-1e9, where range reduction
+ * loses precision. NaN propagates as in the exact functions.
+ *
+ * @see com.anji.activationFunction.ActivationOpcodes
+ */
+public enum ActivationApproximation {
+	EXACT ( "exact" ),
+	TABLE ( "table" ),
+	POLY ( "poly" );
+
+	/**
+	 * properties key selecting the approximation
+	 */
+	public static final String ACTIVATION_APPROXIMATION_KEY = "activation.approximation";
+
+	private static final int TABLE_SIZE = 4096;
+
+	private static final double GAUSSIAN_RANGE = 6.0d;
+
+	private static final double SIGMOID_RANGE = 20.0d;
+
+	private static final double GAUSSIAN_SCALE = TABLE_SIZE / GAUSSIAN_RANGE;
+
+	private static final double SIGMOID_SCALE = TABLE_SIZE / SIGMOID_RANGE;
+
+	private static final double SINE_SCALE = TABLE_SIZE / ( 2 * Math.PI );
+
+	private static final double[] GAUSSIAN_TABLE = new double[ TABLE_SIZE + 1 ];
+
+	private static final double[] SIGMOID_TABLE = new double[ 2 * TABLE_SIZE + 1 ];
+
+	private static final double[] SINE_TABLE = new double[ TABLE_SIZE + 1 ];
+
+	static {
+		for ( int i = 0; i <= TABLE_SIZE; ++i ) {
+			double x = i / GAUSSIAN_SCALE;
+			GAUSSIAN_TABLE[ i ] = Math.exp( -x * x );
+			SINE_TABLE[ i ] = Math.sin( i / SINE_SCALE );
+		}
+		for ( int i = 0; i <= 2 * TABLE_SIZE; ++i )
+			SIGMOID_TABLE[ i ] = 1.0 / ( 1.0 + Math.exp( ( TABLE_SIZE - i ) / SIGMOID_SCALE ) );
+	}
+
+	private static final double MAX_REDUCIBLE = 1e9;
+
+	private static final double LN2_HI = 6.93147180369123816490e-01;
+
+	private static final double LN2_LO = 1.90821492927058770002e-10;
+
+	private static final double INV_LN2 = 1.44269504088896338700e+00;
+
+	private static final double TWO_PI_HI = 6.28318530717958623200e+00;
+
+	private static final double TWO_PI_LO = 2.44929359829470635445e-16;
+
+	private static final double INV_TWO_PI = 1 / ( 2 * Math.PI );
+
+	private static final double HALF_PI = Math.PI / 2;
+
+	private final String name;
+
+	private ActivationApproximation( String aName ) {
+		name = aName;
+	}
+
+	/**
+	 * @param aName <code>exact</code>, <code>table</code> or <code>poly</code>
+	 * @return approximation named <code>aName</code>
+	 * @throws IllegalArgumentException if there is no such approximation
+	 */
+	public static ActivationApproximation get( String aName ) {
+		for ( ActivationApproximation a : values() )
+			if ( a.name.equalsIgnoreCase( aName.trim() ) )
+				return a;
+		throw new IllegalArgumentException( "unknown activation approximation: " + aName );
+	}
+
+	/**
+	 * @see java.lang.Enum#toString()
+	 */
+	public String toString() {
+		return name;
+	}
+
+	/**
+	 * @param opcode
+	 * @return true if this approximates the function identified by <code>opcode</code>
+	 */
+	public boolean approximates( int opcode ) {
+		if ( this == EXACT )
+			return false;
+		switch ( opcode ) {
+		case ActivationOpcodes.GAUSSIAN:
+		case ActivationOpcodes.BIPOLAR_GAUSSIAN:
+		case ActivationOpcodes.SIGMOID:
+		case ActivationOpcodes.BIPOLAR_SIGMOID:
+		case ActivationOpcodes.SINE:
+		case ActivationOpcodes.SINE_UNSIGNED:
+		case ActivationOpcodes.COSINE:
+		case ActivationOpcodes.COSINE_UNSIGNED:
+		case ActivationOpcodes.TANH:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Approximation of the activation function identified by <code>opcode</code>, clamped to
+	 * <code>+/-Double.MAX_VALUE</code> like <code>Neuron.getValue()</code>.
+	 *
+	 * @param opcode
+	 * @param x
+	 * @return approximate activation of <code>x</code>
+	 */
+	public double valueAt( int opcode, double x ) {
+		if ( !approximates( opcode ) )
+			return Math.min( Math.max( ActivationOpcodes.valueAt( opcode, x ), -Double.MAX_VALUE ),
+					Double.MAX_VALUE );
+		if ( this == TABLE ) {
+			switch ( opcode ) {
+			case ActivationOpcodes.GAUSSIAN:
+				return tableGaussian( x );
+			case ActivationOpcodes.BIPOLAR_GAUSSIAN:
+				return tableGaussian( x ) * 2.0 - 1.0;
+			case ActivationOpcodes.SIGMOID:
+				return tableSigmoid( x );
+			case ActivationOpcodes.BIPOLAR_SIGMOID:
+				return tableSigmoid( x ) * 2.0 - 1.0;
+			case ActivationOpcodes.SINE:
+				return tableSine( x, 0 );
+			case ActivationOpcodes.SINE_UNSIGNED:
+				return ( tableSine( x, 0 ) + 1 ) / 2;
+			case ActivationOpcodes.COSINE:
+				return tableSine( x, TABLE_SIZE / 4 );
+			case ActivationOpcodes.COSINE_UNSIGNED:
+				return ( tableSine( x, TABLE_SIZE / 4 ) + 1 ) / 2;
+			default:
+				return tableSigmoid( 2 * x ) * 2.0 - 1.0;
+			}
+		}
+		switch ( opcode ) {
+		case ActivationOpcodes.GAUSSIAN:
+			return polyExp( -x * x );
+		case ActivationOpcodes.BIPOLAR_GAUSSIAN:
+			return polyExp( -x * x ) * 2.0 - 1.0;
+		case ActivationOpcodes.SIGMOID:
+			return polySigmoid( x );
+		case ActivationOpcodes.BIPOLAR_SIGMOID:
+			return polySigmoid( x ) * 2.0 - 1.0;
+		case ActivationOpcodes.SINE:
+			return polySine( x );
+		case ActivationOpcodes.SINE_UNSIGNED:
+			return ( polySine( x ) + 1 ) / 2;
+		case ActivationOpcodes.COSINE:
+			return polySine( x + HALF_PI );
+		case ActivationOpcodes.COSINE_UNSIGNED:
+			return ( polySine( x + HALF_PI ) + 1 ) / 2;
+		default:
+			return polySigmoid( 2 * x ) * 2.0 - 1.0;
+		}
+	}
+
+	/**
+	 * Apply the approximation in place to the first <code>length</code> elements of
+	 * <code>x</code>; exact functions are applied with <code>PlaneKernels</code>.
+	 *
+	 * @param opcode
+	 * @param x
+	 * @param length
+	 */
+	public void apply( int opcode, double[] x, int length ) {
+		if ( !approximates( opcode ) ) {
+			PlaneKernels.apply( opcode, x, length );
+			return;
+		}
+		if ( this == TABLE ) {
+			switch ( opcode ) {
+			case ActivationOpcodes.GAUSSIAN:
+				for ( int p = 0; p < length; ++p )
+					x[ p ] = tableGaussian( x[ p ] );
+				return;
+			case ActivationOpcodes.SIGMOID:
+				for ( int p = 0; p < length; ++p )
+					x[ p ] = tableSigmoid( x[ p ] );
+				return;
+			case ActivationOpcodes.SINE:
+				for ( int p = 0; p < length; ++p )
+					x[ p ] = tableSine( x[ p ], 0 );
+				return;
+			case ActivationOpcodes.COSINE:
+				for ( int p = 0; p < length; ++p )
+					x[ p ] = tableSine( x[ p ], TABLE_SIZE / 4 );
+				return;
+			case ActivationOpcodes.TANH:
+				for ( int p = 0; p < length; ++p )
+					x[ p ] = tableSigmoid( 2 * x[ p ] ) * 2.0 - 1.0;
+				return;
+			}
+		}
+		for ( int p = 0; p < length; ++p )
+			x[ p ] = valueAt( opcode, x[ p ] );
+	}
+
+	private static double tableGaussian( double x ) {
+		double t = Math.abs( x ) * GAUSSIAN_SCALE;
+		if ( t >= TABLE_SIZE )
+			return 0.0d;
+		int i = (int) t;
+		double f = t - i;
+		return GAUSSIAN_TABLE[ i ] + f * ( GAUSSIAN_TABLE[ i + 1 ] - GAUSSIAN_TABLE[ i ] );
+	}
+
+	private static double tableSigmoid( double x ) {
+		double t = x * SIGMOID_SCALE + TABLE_SIZE;
+		if ( !( t > 0 ) )
+			return ( t == t ) ? 0.0d : t;
+		if ( t >= 2 * TABLE_SIZE )
+			return 1.0d;
+		int i = (int) t;
+		double f = t - i;
+		return SIGMOID_TABLE[ i ] + f * ( SIGMOID_TABLE[ i + 1 ] - SIGMOID_TABLE[ i ] );
+	}
+
+	/**
+	 * @param x
+	 * @param shift table entries to add to the phase; a quarter period gives cosine
+	 * @return interpolated <code>sin( x )</code>
+	 */
+	private static double tableSine( double x, int shift ) {
+		if ( !( Math.abs( x ) <= MAX_REDUCIBLE ) )
+			return ( shift == 0 ) ? Math.sin( x ) : Math.cos( x );
+		double t = x * SINE_SCALE;
+		double floor = Math.floor( t );
+		double f = t - floor;
+		int i = (int) ( ( (long) floor + shift ) & ( TABLE_SIZE - 1 ) );
+		return SINE_TABLE[ i ] + f * ( SINE_TABLE[ i + 1 ] - SINE_TABLE[ i ] );
+	}
+
+	/**
+	 * @param y
+	 * @return <code>exp( y )</code> for <code>y &lt;= 0</code>
+	 */
+	private static double polyExp( double y ) {
+		if ( y < -708.0d )
+			return 0.0d;
+		double k = Math.floor( y * INV_LN2 + 0.5d );
+		double r = ( y - k * LN2_HI ) - k * LN2_LO;
+		double p = 1.0d + r * ( 1.0d + r * ( 1.0d / 2 + r * ( 1.0d / 6 + r * ( 1.0d / 24
+				+ r * ( 1.0d / 120 + r * ( 1.0d / 720 + r * ( 1.0d / 5040 ) ) ) ) ) ) );
+		return p * Double.longBitsToDouble( ( (long) k + 1023 ) << 52 );
+	}
+
+	private static double polySigmoid( double x ) {
+		double y = 1.0d / ( 1.0d + polyExp( -Math.abs( x ) ) );
+		return ( x < 0 ) ? 1.0d - y : y;
+	}
+
+	private static double polySine( double x ) {
+		if ( !( Math.abs( x ) <= MAX_REDUCIBLE ) )
+			return Math.sin( x );
+		double n = Math.floor( x * INV_TWO_PI + 0.5d );
+		double r = ( x - n * TWO_PI_HI ) - n * TWO_PI_LO;
+		if ( r > HALF_PI )
+			r = Math.PI - r;
+		else if ( r < -HALF_PI )
+			r = -Math.PI - r;
+		double r2 = r * r;
+		return r * ( 1.0d - r2 / 6 * ( 1.0d - r2 / 20 * ( 1.0d - r2 / 42 * ( 1.0d - r2 / 72
+				* ( 1.0d - r2 / 110 * ( 1.0d - r2 / 156 ) ) ) ) ) );
+	}
+
+}
@@ -0,0 +1,329 @@
+/*
+ * Copyright (C) 2004 Derek James and Philip Tucker
+ *
+ * This file is part of ANJI (Another NEAT Java Implementation).
+ *
+ * ANJI is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See
+ * the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ */
+package com.anji.activationFunction;
+
+/**
+ * Integer opcodes for the activation functions, so that compiled networks can apply an
+ * activation with a single <code>switch</code> instead of an interface call per neuron. Each
+ * opcode evaluates exactly the same expression as the <code>ActivationFunctionStrategy</code>
+ * it replaces, so results are bitwise identical to <code>ActivationFunction.valueAt()</code>.
+ *
+ * @see com.anji.activationFunction.ActivationFunction
+ */
+public final class ActivationOpcodes {
+
+	/** @see Identity */
+	public static final int IDENTITY = 0;
+
+	/** @see Gaussian */
+	public static final int GAUSSIAN = 1;
+
+	/** <code>Gaussian</code> wrapped in <code>UnipolarToBipolar</code> */
+	public static final int BIPOLAR_GAUSSIAN = 2;
+
+	/** @see Sigmoid */
+	public static final int SIGMOID = 3;
+
+	/** <code>Sigmoid</code> wrapped in <code>UnipolarToBipolar</code> */
+	public static final int BIPOLAR_SIGMOID = 4;
+
+	/** @see Sine */
+	public static final int SINE = 5;
+
+	/** @see SineUnsigned */
+	public static final int SINE_UNSIGNED = 6;
+
+	/** @see Cosine */
+	public static final int COSINE = 7;
+
+	/** @see CosineUnsigned */
+	public static final int COSINE_UNSIGNED = 8;
+
+	/** @see Tanh */
+	public static final int TANH = 9;
+
+	/** @see TanhCubic */
+	public static final int TANH_CUBIC = 10;
+
+	/** @see InverseAbs */
+	public static final int INVERSE_ABS = 11;
+
+	/** @see StepSigned */
+	public static final int STEP_SIGNED = 12;
+
+	/** @see StepUnsigned */
+	public static final int STEP_UNSIGNED = 13;
+
+	/** @see ClampedLinearSigned */
+	public static final int CLAMPED_LINEAR_SIGNED = 14;
+
+	/** @see ClampedLinearUnsigned */
+	public static final int CLAMPED_LINEAR_UNSIGNED = 15;
+
+	/** @see EvSailSigmoid */
+	public static final int EV_SAIL_SIGMOID = 16;
+
+	/**
+	 * number of distinct opcodes
+	 */
+	public static final int COUNT = 17;
+
+	private final static double INVERSE_ABS_SLOPE = 0.3d;
+
+	private final static double EV_SAIL_SEP = 0.3d;
+
+	private final static double EV_SAIL_DENOMINATOR = 2 * EV_SAIL_SEP * EV_SAIL_SEP;
+
+	/**
+	 * ulps by which <code>bounds()</code> widens its results, covering the rounding error of
+	 * each function both relative to its value and relative to 1.0
+	 */
+	private final static double BOUNDS_PADDING = 4.0d;
+
+	private ActivationOpcodes() {
+		// static utility
+	}
+
+	/**
+	 * @param function
+	 * @return opcode evaluating the same expression as <code>function</code>
+	 */
+	public static int valueOf( ActivationFunction function ) {
+		switch ( function ) {
+		case IDENTITY:
+		case LINEAR:
+			return IDENTITY;
+		case GAUSSIAN:
+		case GAUSSIAN_SIGNED:
+			return BIPOLAR_GAUSSIAN;
+		case GAUSSIAN_UNSIGNED:
+			return GAUSSIAN;
+		case SIGMOID:
+		case SIGMOID_X:
+		case SIGMOID_SIGNED:
+			return BIPOLAR_SIGMOID;
+		case SIGMOID_UNSIGNED:
+			return SIGMOID;
+		case SINE:
+		case SINE_SIGNED:
+			return SINE;
+		case SINE_UNSIGNED:
+			return SINE_UNSIGNED;
+		case COSINE:
+		case COSINE_SIGNED:
+			return COSINE;
+		case COSINE_UNSIGNED:
+			return COSINE_UNSIGNED;
+		case TAN_H:
+			return TANH;
+		case TAN_H_CUBIC:
+			return TANH_CUBIC;
+		case ABS_INVERSE:
+			return INVERSE_ABS;
+		case STEP_SIGNED:
+			return STEP_SIGNED;
+		case STEP_UNSIGNED:
+			return STEP_UNSIGNED;
+		case CLAMPED_LINEAR_SIGNED:
+			return CLAMPED_LINEAR_SIGNED;
+		case CLAMPED_LINEAR_UNSIGNED:
+			return CLAMPED_LINEAR_UNSIGNED;
+		case EV_SAIL_SIGMOID:
+			return EV_SAIL_SIGMOID;
+		default:
+			throw new IllegalArgumentException( function + " has no opcode" );
+		}
+	}
+
+	/**
+	 * Apply the activation function identified by <code>opcode</code> to <code>x</code>.
+	 *
+	 * @param opcode
+	 * @param x
+	 * @return same value as the corresponding <code>ActivationFunction.valueAt( x )</code>
+	 */
+	public static double valueAt( int opcode, double x ) {
+		switch ( opcode ) {
+		case IDENTITY:
+			return x;
+		case GAUSSIAN:
+			return Math.exp( -x * x );
+		case BIPOLAR_GAUSSIAN:
+			return Math.exp( -x * x ) * 2.0 - 1.0;
+		case SIGMOID:
+			return 1.0 / ( 1.0 + Math.exp( -x ) );
+		case BIPOLAR_SIGMOID:
+			return ( 1.0 / ( 1.0 + Math.exp( -x ) ) ) * 2.0 - 1.0;
+		case SINE:
+			return Math.sin( x );
+		case SINE_UNSIGNED:
+			return ( Math.sin( x ) + 1 ) / 2;
+		case COSINE:
+			return Math.cos( x );
+		case COSINE_UNSIGNED:
+			return ( Math.cos( x ) + 1 ) / 2;
+		case TANH:
+			return -1 + ( 2 / ( 1 + Math.exp( -2 * ( x ) ) ) );
+		case TANH_CUBIC:
+			return -1 + ( 2 / ( 1 + Math.exp( Math.pow( -x, 3 ) ) ) );
+		case INVERSE_ABS:
+			return x / ( INVERSE_ABS_SLOPE + Math.abs( x ) );
+		case STEP_SIGNED:
+			return ( x <= 0 ) ? -1 : 1;
+		case STEP_UNSIGNED:
+			return ( x <= 0 ) ? 0 : 1;
+		case CLAMPED_LINEAR_SIGNED:
+			if ( x <= -1.0 ) return ( -1.0 );
+			if ( x >=  1.0 ) return (  1.0 );
+			return x;
+		case CLAMPED_LINEAR_UNSIGNED:
+			if ( x <= 0.0d )
+				return 0.0d;
+			else if ( x >= 1.0d )
+				return 1.0d;
+			else
+				return x;
+		case EV_SAIL_SIGMOID:
+			if ( x <= -EV_SAIL_SEP )
+				return 0;
+			else if ( x <= 0 ) {
+				double tmp = x + EV_SAIL_SEP;
+				return ( tmp * tmp ) / EV_SAIL_DENOMINATOR;
+			}
+			else if ( x < EV_SAIL_SEP ) {
+				double tmp = x - EV_SAIL_SEP;
+				return 1 - ( ( tmp * tmp ) / EV_SAIL_DENOMINATOR );
+			}
+			else
+				return 1;
+		default:
+			throw new IllegalArgumentException( "invalid opcode: " + opcode );
+		}
+	}
+
+	/**
+	 * Apply the activation function identified by <code>opcode</code> in place to the first
+	 * <code>length</code> elements of <code>x</code>. The <code>switch</code> is taken once per
+	 * call rather than once per element, leaving a simple loop per function.
+	 *
+	 * @param opcode
+	 * @param x values to transform
+	 * @param length number of elements
+	 */
+	public static void valueAt( int opcode, double[] x, int length ) {
+		switch ( opcode ) {
+		case IDENTITY:
+			return;
+		case GAUSSIAN:
+			for ( int i = 0; i < length; ++i )
+				x[ i ] = Math.exp( -x[ i ] * x[ i ] );
+			return;
+		case BIPOLAR_GAUSSIAN:
+			for ( int i = 0; i < length; ++i )
+				x[ i ] = Math.exp( -x[ i ] * x[ i ] ) * 2.0 - 1.0;
+			return;
+		case SIGMOID:
+			for ( int i = 0; i < length; ++i )
+				x[ i ] = 1.0 / ( 1.0 + Math.exp( -x[ i ] ) );
+			return;
+		case BIPOLAR_SIGMOID:
+			for ( int i = 0; i < length; ++i )
+				x[ i ] = ( 1.0 / ( 1.0 + Math.exp( -x[ i ] ) ) ) * 2.0 - 1.0;
+			return;
+		case SINE:
+			for ( int i = 0; i < length; ++i )
+				x[ i ] = Math.sin( x[ i ] );
+			return;
+		case COSINE:
+			for ( int i = 0; i < length; ++i )
+				x[ i ] = Math.cos( x[ i ] );
+			return;
+		default:
+			for ( int i = 0; i < length; ++i )
+				x[ i ] = valueAt( opcode, x[ i ] );
+		}
+	}
+
+	/**
+	 * Bounds of <code>valueAt( opcode, x )</code>, clamped to <code>+/-Double.MAX_VALUE</code>,
+	 * for every <code>x</code> in [<code>lo</code>, <code>hi</code>]. Each function is monotonic
+	 * between its extrema, so the bounds come from the ends of the interval and any extremum
+	 * inside it, widened by a few ulps for the rounding error of the function. Both results
+	 * are NaN, meaning unknown, if either of <code>lo</code> and <code>hi</code> is NaN or
+	 * infinite.
+	 *
+	 * @param opcode
+	 * @param lo
+	 * @param hi
+	 * @param low destination for the lower bound, at <code>idx</code>
+	 * @param high destination for the upper bound, at <code>idx</code>
+	 * @param idx
+	 */
+	public static void bounds( int opcode, double lo, double hi, double[] low, double[] high, int idx ) {
+		if ( !( lo <= hi ) || Double.isInfinite( lo ) || Double.isInfinite( hi ) ) {
+			low[ idx ] = high[ idx ] = Double.NaN;
+			return;
+		}
+		double a = valueAt( opcode, lo );
+		double b = valueAt( opcode, hi );
+		double min = Math.min( a, b );
+		double max = Math.max( a, b );
+		switch ( opcode ) {
+		case GAUSSIAN:
+		case BIPOLAR_GAUSSIAN:
+			if ( lo <= 0 && hi >= 0 )
+				max = valueAt( opcode, 0 );
+			break;
+		case SINE:
+		case SINE_UNSIGNED:
+			if ( containsPeak( lo, hi, Math.PI / 2 ) )
+				max = valueAt( opcode, Math.PI / 2 );
+			if ( containsPeak( lo, hi, -Math.PI / 2 ) )
+				min = valueAt( opcode, -Math.PI / 2 );
+			break;
+		case COSINE:
+		case COSINE_UNSIGNED:
+			if ( containsPeak( lo, hi, 0 ) )
+				max = valueAt( opcode, 0 );
+			if ( containsPeak( lo, hi, Math.PI ) )
+				min = valueAt( opcode, Math.PI );
+			break;
+		default:
+			// every other function is non-decreasing
+		}
+		double pad = BOUNDS_PADDING * ( Math.ulp( 1.0d ) + Math.max( Math.ulp( min ), Math.ulp( max ) ) );
+		low[ idx ] = Math.max( min - pad, -Double.MAX_VALUE );
+		high[ idx ] = Math.min( max + pad, Double.MAX_VALUE );
+	}
+
+	/**
+	 * @param lo
+	 * @param hi
+	 * @param phase
+	 * @return true if [<code>lo</code>, <code>hi</code>], or a margin around it, contains
+	 * <code>phase + 2 * PI * k</code> for some integer <code>k</code>
+	 */
+	private static boolean containsPeak( double lo, double hi, double phase ) {
+		if ( hi - lo >= 2 * Math.PI )
+			return true;
+		double margin = 1e-9d * ( 1 + Math.abs( lo ) + Math.abs( hi ) );
+		double k = Math.ceil( ( lo - margin - phase ) / ( 2 * Math.PI ) );
+		return phase + 2 * Math.PI * k <= hi + margin;
+	}
+
+}
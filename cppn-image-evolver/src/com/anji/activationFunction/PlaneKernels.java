@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2004 Derek James and Philip Tucker
+ *
+ * This file is part of ANJI (Another NEAT Java Implementation).
+ *
+ * ANJI is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See
+ * the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ */
+package com.anji.activationFunction;
+
+/**
+ * Activation and weighted-sum kernels over whole planes of values. Every loop is a simple
+ * counted loop over independent elements with no calls or branches in the body wherever the
+ * function allows it, the shape the JIT's superword pass turns into SIMD instructions.
+ * Accumulation kernels fuse up to four connections into one pass over the sum plane, and
+ * activation kernels fold in <code>Neuron</code>'s clamping only for functions that can
+ * actually exceed it.
+ * <p>
+ * Per element, each kernel evaluates exactly the same expression in the same order as the
+ * scalar code in <code>ActivationOpcodes</code> and <code>CompiledNet</code>, so results are
+ * bitwise identical to the scalar fallback.
+ *
+ * @see com.anji.activationFunction.ActivationOpcodes
+ */
+public final class PlaneKernels {
+
+	private PlaneKernels() {
+		// static utility
+	}
+
+	/**
+	 * @param opcode
+	 * @return true if the function's output always lies in [-1, 1] (or is NaN), making the
+	 * clamp to <code>+/-Double.MAX_VALUE</code> a no-op
+	 */
+	public static boolean isBounded( int opcode ) {
+		return opcode != ActivationOpcodes.IDENTITY;
+	}
+
+	/**
+	 * <code>sum[p] = 0.0 + w * src[p]</code>, the first term of a weighted sum.
+	 *
+	 * @param sum destination
+	 * @param src
+	 * @param w
+	 * @param length
+	 */
+	public static void multiply( double[] sum, double[] src, double w, int length ) {
+		for ( int p = 0; p < length; ++p )
+			sum[ p ] = 0.0d + w * src[ p ];
+	}
+
+	/**
+	 * <code>sum[p] += w * src[p]</code>
+	 *
+	 * @param sum
+	 * @param src
+	 * @param w
+	 * @param length
+	 */
+	public static void multiplyAdd( double[] sum, double[] src, double w, int length ) {
+		for ( int p = 0; p < length; ++p )
+			sum[ p ] += w * src[ p ];
+	}
+
+	/**
+	 * Two connections in one pass.
+	 *
+	 * @param sum
+	 * @param s0
+	 * @param w0
+	 * @param s1
+	 * @param w1
+	 * @param length
+	 */
+	public static void multiplyAdd( double[] sum, double[] s0, double w0, double[] s1, double w1,
+			int length ) {
+		for ( int p = 0; p < length; ++p )
+			sum[ p ] = sum[ p ] + w0 * s0[ p ] + w1 * s1[ p ];
+	}
+
+	/**
+	 * Four connections in one pass.
+	 *
+	 * @param sum
+	 * @param s0
+	 * @param w0
+	 * @param s1
+	 * @param w1
+	 * @param s2
+	 * @param w2
+	 * @param s3
+	 * @param w3
+	 * @param length
+	 */
+	public static void multiplyAdd( double[] sum, double[] s0, double w0, double[] s1, double w1,
+			double[] s2, double w2, double[] s3, double w3, int length ) {
+		for ( int p = 0; p < length; ++p )
+			sum[ p ] = sum[ p ] + w0 * s0[ p ] + w1 * s1[ p ] + w2 * s2[ p ] + w3 * s3[ p ];
+	}
+
+	/**
+	 * Apply the activation function identified by <code>opcode</code> in place, clamped to
+	 * <code>+/-Double.MAX_VALUE</code> like <code>Neuron.getValue()</code>.
+	 *
+	 * @param opcode
+	 * @param x
+	 * @param length
+	 */
+	public static void apply( int opcode, double[] x, int length ) {
+		switch ( opcode ) {
+		case ActivationOpcodes.IDENTITY:
+			for ( int p = 0; p < length; ++p )
+				x[ p ] = Math.min( Math.max( x[ p ], -Double.MAX_VALUE ), Double.MAX_VALUE );
+			return;
+		case ActivationOpcodes.INVERSE_ABS:
+			for ( int p = 0; p < length; ++p )
+				x[ p ] = x[ p ] / ( 0.3d + Math.abs( x[ p ] ) );
+			return;
+		case ActivationOpcodes.STEP_SIGNED:
+			for ( int p = 0; p < length; ++p )
+				x[ p ] = ( x[ p ] <= 0 ) ? -1 : 1;
+			return;
+		case ActivationOpcodes.STEP_UNSIGNED:
+			for ( int p = 0; p < length; ++p )
+				x[ p ] = ( x[ p ] <= 0 ) ? 0 : 1;
+			return;
+		case ActivationOpcodes.CLAMPED_LINEAR_SIGNED:
+			for ( int p = 0; p < length; ++p ) {
+				double v = x[ p ];
+				x[ p ] = ( v <= -1.0 ) ? -1.0 : ( ( v >= 1.0 ) ? 1.0 : v );
+			}
+			return;
+		case ActivationOpcodes.CLAMPED_LINEAR_UNSIGNED:
+			for ( int p = 0; p < length; ++p ) {
+				double v = x[ p ];
+				x[ p ] = ( v <= 0.0d ) ? 0.0d : ( ( v >= 1.0d ) ? 1.0d : v );
+			}
+			return;
+		default:
+			ActivationOpcodes.valueAt( opcode, x, length );
+		}
+	}
+
+}
@@ -37,6 +37,18 @@ public class ActivatorTranscriber implements Configurable, Transcriber {
  */
 public final static String ANJI_TYPE = "anji";
 
+/**
+ * enumerated type constant for an ANJI ANN compiled to a <code>CompiledNet</code>; requires
+ * a feed-forward network and a single recurrent cycle
+ */
+public final static String ANJI_COMPILED_TYPE = "anji.compiled";
+
+/**
+ * enumerated type constant for an ANJI ANN compiled to a generated class; requires a
+ * feed-forward network and a single recurrent cycle
+ */
+public final static String ANJI_GENERATED_TYPE = "anji.generated";
+
 /**
  * enumerated type constant for JOONE ANN
  */
@@ -93,6 +105,24 @@ public Activator newActivator( Chromosome ch ) throws TranscriberException {
 Activator result = null;
 if ( ANJI_TYPE.equals( type ) ) {
 	result = new AnjiActivator( transcriber.newAnjiNet( ch ), recurrentCycles );
+} else if ( ANJI_COMPILED_TYPE.equals( type ) ) {
+	if ( recurrentCycles != 1 )
+		throw new TranscriberException( "compiled networks support exactly 1 recurrent cycle" );
+	try {
+		result = new CompiledActivator( transcriber.newAnjiNet( ch ) );
+	}
+	catch ( IllegalArgumentException e ) {
+		throw new TranscriberException( ch.toString(), e );
+	}
+} else if ( ANJI_GENERATED_TYPE.equals( type ) ) {
+	if ( recurrentCycles != 1 )
+		throw new TranscriberException( "generated networks support exactly 1 recurrent cycle" );
+	try {
+		result = new GeneratedActivator( transcriber.newAnjiNet( ch ) );
+	}
+	catch ( IllegalArgumentException e ) {
+		throw new TranscriberException( ch.toString(), e );
+	}
 //	} else if ( PICBREEDER_TYPE.equalsIgnoreCase( type )) {
 //		result = CPPNFactoryInstance.get().createNetwork(ch);
 } else if ( JOONE_TYPE.equals( type ) ) {
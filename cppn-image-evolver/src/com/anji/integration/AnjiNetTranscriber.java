@@ -37,6 +37,7 @@ import com.anji.neat.NeuronAllele;
 import com.anji.neat.NeuronType;
 import com.anji.nn.AnjiNet;
 import com.anji.nn.CacheNeuronConnection;
+import com.anji.nn.CompiledNet;
 import com.anji.nn.Neuron;
 import com.anji.nn.NeuronConnection;
 import com.anji.nn.RecurrencyPolicy;
@@ -204,6 +205,22 @@ public AnjiNet newAnjiNet( Chromosome genotype ) throws TranscriberException {
 			.getId().toString() );
 }
 
+/**
+ * create new <code>CompiledNet</code> from <code>genotype</code>
+ * 
+ * @param genotype chromosome to transcribe; must be feed-forward
+ * @return compiled phenotype
+ * @throws TranscriberException if the network can not be built or compiled
+ */
+public CompiledNet newCompiledNet( Chromosome genotype ) throws TranscriberException {
+	try {
+		return new CompiledNet( newAnjiNet( genotype ) );
+	}
+	catch ( IllegalArgumentException e ) {
+		throw new TranscriberException( genotype.toString(), e );
+	}
+}
+
 /**
  * @see Transcriber#transcribe(Chromosome)
  */
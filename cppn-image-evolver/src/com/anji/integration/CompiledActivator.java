@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2004 Derek James and Philip Tucker
+ *
+ * This file is part of ANJI (Another NEAT Java Implementation).
+ *
+ * ANJI is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See
+ * the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ */
+package com.anji.integration;
+
+import com.anji.nn.AnjiNet;
+import com.anji.nn.CompiledNet;
+
+/**
+ * <code>Activator</code> backed by a <code>CompiledNet</code>. Drop-in replacement for
+ * <code>AnjiActivator</code> on feed-forward networks with a single activation cycle.
+ *
+ * @see com.anji.nn.CompiledNet
+ */
+public class CompiledActivator implements Activator {
+
+private CompiledNet compiled;
+
+private AnjiNet net;
+
+private double[] stimuli;
+
+/**
+ * @param aNet feed-forward ANN
+ * @throws IllegalArgumentException if <code>aNet</code> can not be compiled
+ */
+public CompiledActivator( AnjiNet aNet ) throws IllegalArgumentException {
+	super();
+	net = aNet;
+	compiled = new CompiledNet( aNet );
+	stimuli = new double[ compiled.getInputDimension() ];
+
+	// verify consistent response ranges
+	double min = compiled.getOutputFunc( 0 ).getMinValue();
+	double max = compiled.getOutputFunc( 0 ).getMaxValue();
+	for ( int i = 1; i < compiled.getOutputDimension(); ++i )
+		if ( min != compiled.getOutputFunc( i ).getMinValue()
+				|| max != compiled.getOutputFunc( i ).getMaxValue() )
+			throw new IllegalArgumentException( "min and max values for response nodes differ" );
+}
+
+/**
+ * @return compiled network
+ */
+public CompiledNet getCompiledNet() {
+	return compiled;
+}
+
+/**
+ * @see com.anji.integration.Activator#getInputDimension()
+ */
+public int getInputDimension() {
+	return compiled.getInputDimension();
+}
+
+/**
+ * @see com.anji.integration.Activator#getMaxResponse()
+ */
+public double getMaxResponse() {
+	return compiled.getOutputFunc( 0 ).getMaxValue();
+}
+
+/**
+ * @see com.anji.integration.Activator#getMinResponse()
+ */
+public double getMinResponse() {
+	return compiled.getOutputFunc( 0 ).getMinValue();
+}
+
+/**
+ * @see com.anji.integration.Activator#getName()
+ */
+public String getName() {
+	return compiled.getName();
+}
+
+/**
+ * @see com.anji.integration.Activator#getOutputDimension()
+ */
+public int getOutputDimension() {
+	return compiled.getOutputDimension();
+}
+
+/**
+ * @see com.anji.util.XmlPersistable#getXmld()
+ */
+public String getXmld() {
+	return compiled.getName();
+}
+
+/**
+ * @see com.anji.util.XmlPersistable#getXmlRootTag()
+ */
+public String getXmlRootTag() {
+	return "network";
+}
+
+/**
+ * @see com.anji.integration.Activator#next()
+ */
+public double[] next() {
+	return next( (double[]) null );
+}
+
+/**
+ * @see com.anji.integration.Activator#next(double[])
+ */
+public double[] next( double[] newInputValues ) {
+	if ( newInputValues != null )
+		stimuli = newInputValues;
+	double[] result = new double[ compiled.getOutputDimension() ];
+	compiled.activate( stimuli, result );
+	return result;
+}
+
+/**
+ * @see com.anji.integration.Activator#next(double[][])
+ */
+public double[][] next( double[][] newInputValues ) {
+	double[][] result = new double[ newInputValues.length ][];
+	for ( int i = 0; i < newInputValues.length; ++i )
+		result[ i ] = next( newInputValues[ i ] );
+	return result;
+}
+
+/**
+ * no-op; compiled networks hold no state between activations
+ * @see com.anji.integration.Activator#reset()
+ */
+public void reset() {
+	// no-op
+}
+
+/**
+ * @see java.lang.Object#toString()
+ */
+public String toString() {
+	return compiled.toString();
+}
+
+/**
+ * @see com.anji.integration.Activator#toXml()
+ */
+public String toXml() {
+	return net.toXml();
+}
+
+}
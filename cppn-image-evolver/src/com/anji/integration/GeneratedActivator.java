@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2004 Derek James and Philip Tucker
+ *
+ * This file is part of ANJI (Another NEAT Java Implementation).
+ *
+ * ANJI is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See
+ * the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ */
+package com.anji.integration;
+
+import com.anji.nn.AnjiNet;
+import com.anji.nn.GeneratedNet;
+import com.anji.nn.NetClassGenerator;
+
+/**
+ * <code>Activator</code> backed by a class generated for the network by
+ * <code>NetClassGenerator</code>. Generating and loading the class costs far more than a
+ * single activation, so this pays off only for networks activated many times.
+ *
+ * @see com.anji.nn.NetClassGenerator
+ */
+public class GeneratedActivator extends CompiledActivator {
+
+private GeneratedNet generated;
+
+private double[] stimuli;
+
+/**
+ * @param aNet feed-forward ANN
+ * @throws IllegalArgumentException if <code>aNet</code> can not be compiled
+ */
+public GeneratedActivator( AnjiNet aNet ) throws IllegalArgumentException {
+	super( aNet );
+	generated = NetClassGenerator.generate( getCompiledNet() );
+	stimuli = new double[ getInputDimension() ];
+}
+
+/**
+ * @return generated network
+ */
+public GeneratedNet getGeneratedNet() {
+	return generated;
+}
+
+/**
+ * @see com.anji.integration.Activator#next(double[])
+ */
+public double[] next( double[] newInputValues ) {
+	if ( newInputValues != null )
+		stimuli = newInputValues;
+	double[] result = new double[ getOutputDimension() ];
+	generated.activate( stimuli, result );
+	return result;
+}
+
+}
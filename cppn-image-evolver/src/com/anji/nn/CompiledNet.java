@@ -0,0 +1,933 @@
+/*
+ * Copyright (C) 2004 Derek James and Philip Tucker
+ *
+ * This file is part of ANJI (Another NEAT Java Implementation).
+ *
+ * ANJI is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See
+ * the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ */
+package com.anji.nn;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.anji.activationFunction.ActivationApproximation;
+import com.anji.activationFunction.ActivationFunction;
+import com.anji.activationFunction.ActivationFunctionStrategy;
+import com.anji.activationFunction.ActivationOpcodes;
+import com.anji.activationFunction.PlaneKernels;
+
+/**
+ * Feed-forward network flattened into a topologically ordered program of primitive arrays.
+ * Neurons are numbered with the input neurons first, followed by the remaining neurons in an
+ * order where every neuron comes after all of its sources. Incoming connections are stored in
+ * compressed rows (<code>connStart</code>, <code>connSrc</code>, <code>connWeight</code>)
+ * and activation functions as <code>ActivationOpcodes</code>, so <code>activate()</code> is a
+ * tight loop with no allocation, no dirty flags and no virtual calls. Results are bitwise
+ * identical to activating the source <code>AnjiNet</code> for one cycle.
+ * <p>
+ * The plane <code>activate()</code> methods keep no state of their own, so several threads may
+ * evaluate different blocks of samples on one network at once, each with its own planes.
+ * <code>activate( double[], double[] )</code> is not thread safe.
+ *
+ * @see com.anji.nn.AnjiNet
+ */
+public class CompiledNet {
+
+/**
+ * function of a neuron whose value is fixed (see <code>NetOptimizer</code>) rather than
+ * computed from incoming connections
+ */
+static final int CONSTANT = -1;
+
+/**
+ * dependency of a neuron only on constant inputs; see <code>getDependencies()</code>
+ */
+public static final int DEPENDS_NONE = -1;
+
+/**
+ * dependency of a neuron on inputs of more than one group; see
+ * <code>getDependencies()</code>
+ */
+public static final int DEPENDS_MANY = -2;
+
+private final int[] functions;
+
+private final double[] constants;
+
+private final int[] connStart;
+
+private final int[] connSrc;
+
+private final double[] connWeight;
+
+private final int numInputs;
+
+private final int[] outIndices;
+
+private final long[] ids;
+
+private final ActivationFunctionStrategy[] outFuncs;
+
+private final String name;
+
+private final double[] values;
+
+private boolean planeKernels = true;
+
+private ActivationApproximation approximation = ActivationApproximation.EXACT;
+
+private float[] connWeightFloat;
+
+private float[] constantsFloat;
+
+private int[] connWeightFixed;
+
+private int[] constantsFixed;
+
+/**
+ * Compile <code>aNet</code>. Only neurons and connections of the network are read;
+ * <code>aNet</code> is not modified.
+ *
+ * @param aNet network to compile; must not contain recurrent connections
+ * @throws IllegalArgumentException if <code>aNet</code> is recurrent or contains connection
+ * types other than <code>NeuronConnection</code>
+ */
+public CompiledNet( AnjiNet aNet ) throws IllegalArgumentException {
+	List<Neuron> order = new ArrayList<Neuron>( aNet.getNeurons().size() );
+	Map<Neuron, Integer> indices = new HashMap<Neuron, Integer>();
+
+	// input neurons first, in input order, fed only by the stimulus pattern
+	for ( Neuron n : aNet.getInputNeurons() ) {
+		for ( Connection c : n.getIncomingConns() )
+			if ( !( c instanceof Pattern.PatternConnection ) )
+				throw new IllegalArgumentException( "input neuron " + n + " has incoming connection " + c );
+		indices.put( n, new Integer( order.size() ) );
+		order.add( n );
+	}
+
+	// remaining neurons in topological order
+	Map<Neuron, Boolean> visiting = new HashMap<Neuron, Boolean>();
+	for ( Neuron n : aNet.getNeurons() )
+		sort( n, indices, visiting, order );
+
+	numInputs = aNet.getInputDimension();
+	int numNeurons = order.size();
+	int numConns = 0;
+	for ( int i = numInputs; i < numNeurons; ++i )
+		numConns += order.get( i ).getIncomingConns().size();
+
+	functions = new int[ numNeurons ];
+	constants = new double[ numNeurons ];
+	ids = new long[ numNeurons ];
+	connStart = new int[ numNeurons + 1 ];
+	connSrc = new int[ numConns ];
+	connWeight = new double[ numConns ];
+	values = new double[ numNeurons ];
+
+	int c = 0;
+	for ( int i = 0; i < numNeurons; ++i ) {
+		Neuron n = order.get( i );
+		if ( !( n.getFunc() instanceof ActivationFunction ) )
+			throw new IllegalArgumentException( "unsupported activation function on neuron " + n );
+		functions[ i ] = ActivationOpcodes.valueOf( (ActivationFunction) n.getFunc() );
+		ids[ i ] = n.getId();
+		connStart[ i ] = c;
+		if ( i >= numInputs ) {
+			for ( Connection conn : n.getIncomingConns() ) {
+				NeuronConnection nConn = (NeuronConnection) conn;
+				connSrc[ c ] = indices.get( nConn.getIncomingNode() ).intValue();
+				connWeight[ c ] = nConn.getWeight();
+				++c;
+			}
+		}
+	}
+	connStart[ numNeurons ] = c;
+
+	outIndices = new int[ aNet.getOutputDimension() ];
+	outFuncs = new ActivationFunctionStrategy[ outIndices.length ];
+	for ( int i = 0; i < outIndices.length; ++i ) {
+		Neuron n = aNet.getOutputNeuron( i );
+		outIndices[ i ] = indices.get( n ).intValue();
+		outFuncs[ i ] = n.getFunc();
+	}
+
+	name = aNet.getName();
+}
+
+/**
+ * Network from its flattened representation; see <code>NetOptimizer</code>.
+ *
+ * @param aNumInputs number of input neurons, which come first
+ * @param aFunctions opcode of each neuron, or <code>CONSTANT</code>
+ * @param aConstants value of each <code>CONSTANT</code> neuron
+ * @param anIds innovation ID of each neuron
+ * @param aConnStart index of the first incoming connection of each neuron, plus the total
+ * @param aConnSrc source neuron of each connection
+ * @param aConnWeight weight of each connection
+ * @param anOutIndices neuron of each output
+ * @param anOutFuncs activation function of each output
+ * @param aName
+ */
+CompiledNet( int aNumInputs, int[] aFunctions, double[] aConstants, long[] anIds,
+		int[] aConnStart, int[] aConnSrc, double[] aConnWeight, int[] anOutIndices,
+		ActivationFunctionStrategy[] anOutFuncs, String aName ) {
+	numInputs = aNumInputs;
+	functions = aFunctions;
+	constants = aConstants;
+	ids = anIds;
+	connStart = aConnStart;
+	connSrc = aConnSrc;
+	connWeight = aConnWeight;
+	outIndices = anOutIndices;
+	outFuncs = anOutFuncs;
+	name = aName;
+	values = new double[ functions.length ];
+}
+
+/**
+ * Depth-first post-order traversal of incoming connections, appending each neuron after all
+ * of its sources.
+ *
+ * @param n
+ * @param indices neurons already placed, mapped to their position in <code>order</code>
+ * @param visiting neurons on the current traversal path
+ * @param order destination
+ */
+private static void sort( Neuron n, Map<Neuron, Integer> indices, Map<Neuron, Boolean> visiting,
+		List<Neuron> order ) {
+	if ( indices.containsKey( n ) )
+		return;
+	if ( visiting.containsKey( n ) )
+		throw new IllegalArgumentException( "network contains a loop through neuron " + n );
+	visiting.put( n, Boolean.TRUE );
+	for ( Connection c : n.getIncomingConns() ) {
+		if ( c instanceof CacheNeuronConnection )
+			throw new IllegalArgumentException( "recurrent connection into neuron " + n );
+		if ( !( c instanceof NeuronConnection ) )
+			throw new IllegalArgumentException( "unsupported connection into neuron " + n + ": " + c );
+		sort( ( (NeuronConnection) c ).getIncomingNode(), indices, visiting, order );
+	}
+	visiting.remove( n );
+	indices.put( n, new Integer( order.size() ) );
+	order.add( n );
+}
+
+/**
+ * Same clamping as <code>Neuron.getValue()</code>.
+ *
+ * @param opcode
+ * @param sum
+ * @return activation of <code>sum</code>
+ */
+static double activation( int opcode, double sum ) {
+	return Math.min( Math.max( ActivationOpcodes.valueAt( opcode, sum ), -Double.MAX_VALUE ),
+			Double.MAX_VALUE );
+}
+
+/**
+ * @param opcode
+ * @param sum
+ * @return <code>activation( opcode, sum )</code>, or its approximation
+ */
+private double approximate( int opcode, double sum ) {
+	return ( approximation == ActivationApproximation.EXACT ) ? activation( opcode, sum )
+			: approximation.valueAt( opcode, sum );
+}
+
+/**
+ * Activate the network for <code>stimuli</code>.
+ *
+ * @param stimuli input values, one per input neuron
+ * @param result destination for output values, one per output neuron
+ */
+public void activate( double[] stimuli, double[] result ) {
+	for ( int i = 0; i < numInputs; ++i )
+		values[ i ] = activation( functions[ i ], stimuli[ i ] );
+	for ( int i = numInputs; i < functions.length; ++i ) {
+		if ( functions[ i ] == CONSTANT ) {
+			values[ i ] = constants[ i ];
+			continue;
+		}
+		double sum = 0.0d;
+		for ( int c = connStart[ i ]; c < connStart[ i + 1 ]; ++c )
+			sum += connWeight[ c ] * values[ connSrc[ c ] ];
+		values[ i ] = approximate( functions[ i ], sum );
+	}
+	for ( int i = 0; i < outIndices.length; ++i )
+		result[ i ] = values[ outIndices[ i ] ];
+}
+
+/**
+ * Same clamping as <code>Neuron.getValue()</code>, applied to a plane of sums in place.
+ *
+ * @param opcode
+ * @param plane
+ * @param length
+ */
+private static void activation( int opcode, double[] plane, int length ) {
+	ActivationOpcodes.valueAt( opcode, plane, length );
+	for ( int p = 0; p < length; ++p )
+		plane[ p ] = Math.min( Math.max( plane[ p ], -Double.MAX_VALUE ), Double.MAX_VALUE );
+}
+
+/**
+ * Activate the network for a batch of <code>length</code> stimuli, one neuron at a time.
+ * Each neuron is evaluated over the whole batch as a contiguous plane before moving to the
+ * next, so every connection is a single multiply-add loop over two arrays. Per sample, sums
+ * are accumulated in the same order as <code>activate( double[], double[] )</code>, so
+ * results are bitwise identical.
+ *
+ * @param stimuli input planes, one per input neuron; element <code>offset + p</code> is the
+ * stimulus for sample <code>p</code>
+ * @param offset index of the first sample in each of <code>stimuli</code>
+ * @param planes destination, one plane per neuron of at least <code>length</code> elements;
+ * see <code>newPlanes()</code>
+ * @param length number of samples
+ * @see #getOutputPlane(double[][], int)
+ */
+public void activate( double[][] stimuli, int offset, double[][] planes, int length ) {
+	activate( stimuli, offset, planes, length, null );
+}
+
+/**
+ * Like <code>activate( double[][], int, double[][], int )</code>, but only for the neurons
+ * selected by <code>mask</code>. Planes of the other neurons are neither read nor written
+ * unless they are sources of selected neurons, in which case the caller must have filled them.
+ *
+ * @param stimuli input planes, one per input neuron; only read for selected inputs
+ * @param offset index of the first sample in each of <code>stimuli</code>
+ * @param planes one plane per neuron of at least <code>length</code> elements
+ * @param length number of samples
+ * @param mask <code>true</code> for each neuron to evaluate, or null for all
+ * @see #getDependencies(int[])
+ */
+public void activate( double[][] stimuli, int offset, double[][] planes, int length,
+		boolean[] mask ) {
+	for ( int i = 0; i < numInputs; ++i ) {
+		if ( mask != null && !mask[ i ] )
+			continue;
+		System.arraycopy( stimuli[ i ], offset, planes[ i ], 0, length );
+		activation( functions[ i ], planes[ i ], length );
+	}
+	for ( int i = numInputs; i < functions.length; ++i ) {
+		if ( mask == null || mask[ i ] )
+			evaluate( i, planes, length );
+	}
+}
+
+/**
+ * Activation of a plane of sums, in place.
+ *
+ * @param opcode
+ * @param plane
+ * @param length
+ */
+private void approximate( int opcode, double[] plane, int length ) {
+	if ( approximation == ActivationApproximation.EXACT )
+		activation( opcode, plane, length );
+	else
+		approximation.apply( opcode, plane, length );
+}
+
+/**
+ * Evaluates non-input neuron <code>i</code> into <code>planes[ i ]</code> from the planes of
+ * its sources, using <code>PlaneKernels</code> to accumulate up to four connections per pass
+ * if <code>planeKernels</code> is set.
+ *
+ * @param i
+ * @param planes
+ * @param length
+ */
+private void evaluate( int i, double[][] planes, int length ) {
+	double[] sum = planes[ i ];
+	if ( functions[ i ] == CONSTANT ) {
+		Arrays.fill( sum, 0, length, constants[ i ] );
+		return;
+	}
+	int c = connStart[ i ];
+	int end = connStart[ i + 1 ];
+	if ( planeKernels ) {
+		if ( c == end )
+			Arrays.fill( sum, 0, length, 0.0d );
+		else {
+			PlaneKernels.multiply( sum, planes[ connSrc[ c ] ], connWeight[ c ], length );
+			for ( ++c; c + 3 < end; c += 4 )
+				PlaneKernels.multiplyAdd( sum, planes[ connSrc[ c ] ], connWeight[ c ],
+						planes[ connSrc[ c + 1 ] ], connWeight[ c + 1 ], planes[ connSrc[ c + 2 ] ],
+						connWeight[ c + 2 ], planes[ connSrc[ c + 3 ] ], connWeight[ c + 3 ], length );
+			if ( c + 1 < end ) {
+				PlaneKernels.multiplyAdd( sum, planes[ connSrc[ c ] ], connWeight[ c ],
+						planes[ connSrc[ c + 1 ] ], connWeight[ c + 1 ], length );
+				c += 2;
+			}
+			if ( c < end )
+				PlaneKernels.multiplyAdd( sum, planes[ connSrc[ c ] ], connWeight[ c ], length );
+		}
+		approximation.apply( functions[ i ], sum, length );
+		return;
+	}
+	if ( c == end )
+		Arrays.fill( sum, 0, length, 0.0d );
+	else {
+		// start from 0.0d like the scalar path, so a product of -0.0 sums to 0.0
+		double[] src = planes[ connSrc[ c ] ];
+		double w = connWeight[ c ];
+		for ( int p = 0; p < length; ++p )
+			sum[ p ] = 0.0d + w * src[ p ];
+		for ( ++c; c < end; ++c ) {
+			src = planes[ connSrc[ c ] ];
+			w = connWeight[ c ];
+			for ( int p = 0; p < length; ++p )
+				sum[ p ] += w * src[ p ];
+		}
+	}
+	approximate( functions[ i ], sum, length );
+}
+
+/**
+ * Interval bounds of every neuron's value over all stimuli within the given bounds. Sums are
+ * accumulated in the same order as <code>activate( double[][], int, double[][], int )</code>,
+ * and rounding is monotonic, so every value that activation computes for such stimuli lies
+ * within the bounds; activation functions are bounded by
+ * <code>ActivationOpcodes.bounds()</code>. A bound that is not finite makes the neuron and
+ * those downstream of it unknown, with NaN bounds.
+ *
+ * @param lo lower bound of the stimulus of each input neuron
+ * @param hi upper bound of the stimulus of each input neuron
+ * @param low destination for the lower bound of each neuron
+ * @param high destination for the upper bound of each neuron
+ * @throws IllegalStateException if activation functions are approximated
+ */
+public void activateBounds( double[] lo, double[] hi, double[] low, double[] high )
+		throws IllegalStateException {
+	if ( approximation != ActivationApproximation.EXACT )
+		throw new IllegalStateException( "no bounds for approximation " + approximation );
+	for ( int i = 0; i < numInputs; ++i )
+		ActivationOpcodes.bounds( functions[ i ], lo[ i ], hi[ i ], low, high, i );
+	for ( int i = numInputs; i < functions.length; ++i ) {
+		if ( functions[ i ] == CONSTANT ) {
+			low[ i ] = high[ i ] = constants[ i ];
+			continue;
+		}
+		double sumLow = 0.0d;
+		double sumHigh = 0.0d;
+		for ( int c = connStart[ i ]; c < connStart[ i + 1 ]; ++c ) {
+			double w = connWeight[ c ];
+			double a = w * low[ connSrc[ c ] ];
+			double b = w * high[ connSrc[ c ] ];
+			sumLow += Math.min( a, b );
+			sumHigh += Math.max( a, b );
+		}
+		ActivationOpcodes.bounds( functions[ i ], sumLow, sumHigh, low, high, i );
+	}
+}
+
+/**
+ * Like <code>activate( double[][], int, double[][], int )</code> in single precision: weights,
+ * sums and neuron values are <code>float</code>, and each activation function is evaluated in
+ * <code>double</code> and rounded to <code>float</code>, saturating at
+ * <code>+/-Float.MAX_VALUE</code>.
+ *
+ * @param stimuli input planes, one per input neuron
+ * @param offset index of the first sample in each of <code>stimuli</code>
+ * @param planes destination, one plane per neuron; see <code>newFloatPlanes()</code>
+ * @param length number of samples
+ */
+public void activate( float[][] stimuli, int offset, float[][] planes, int length ) {
+	if ( connWeightFloat == null ) {
+		constantsFloat = Precision.toFloat( constants );
+		connWeightFloat = Precision.toFloat( connWeight );
+	}
+	double[] scratch = new double[ length ];
+	for ( int i = 0; i < numInputs; ++i ) {
+		float[] in = stimuli[ i ];
+		float[] plane = planes[ i ];
+		for ( int p = 0; p < length; ++p )
+			plane[ p ] = Precision.toFloat( activation( functions[ i ], in[ offset + p ] ) );
+	}
+	for ( int i = numInputs; i < functions.length; ++i ) {
+		float[] sum = planes[ i ];
+		if ( functions[ i ] == CONSTANT ) {
+			Arrays.fill( sum, 0, length, constantsFloat[ i ] );
+			continue;
+		}
+		int c = connStart[ i ];
+		int end = connStart[ i + 1 ];
+		if ( c == end )
+			Arrays.fill( sum, 0, length, 0.0f );
+		else {
+			float[] src = planes[ connSrc[ c ] ];
+			float w = connWeightFloat[ c ];
+			for ( int p = 0; p < length; ++p )
+				sum[ p ] = 0.0f + w * src[ p ];
+			for ( ++c; c < end; ++c ) {
+				src = planes[ connSrc[ c ] ];
+				w = connWeightFloat[ c ];
+				for ( int p = 0; p < length; ++p )
+					sum[ p ] += w * src[ p ];
+			}
+		}
+		for ( int p = 0; p < length; ++p )
+			scratch[ p ] = sum[ p ];
+		approximate( functions[ i ], scratch, length );
+		for ( int p = 0; p < length; ++p )
+			sum[ p ] = Precision.toFloat( scratch[ p ] );
+	}
+}
+
+/**
+ * Like <code>activate( double[][], int, double[][], int )</code> in signed 16.16 fixed point
+ * (see <code>Precision</code>). Weights and neuron values are fixed point; each sum is
+ * accumulated exactly in a <code>long</code> and rounded once, and each activation function
+ * is evaluated in <code>double</code> and rounded back to fixed point. Values saturate at
+ * <code>+/-Precision.FIXED_MAX</code>.
+ *
+ * @param stimuli input planes, one per input neuron
+ * @param offset index of the first sample in each of <code>stimuli</code>
+ * @param planes destination, one plane per neuron; see <code>newFixedPlanes()</code>
+ * @param length number of samples
+ */
+public void activateFixed( int[][] stimuli, int offset, int[][] planes, int length ) {
+	if ( connWeightFixed == null ) {
+		constantsFixed = Precision.toFixed( constants );
+		connWeightFixed = Precision.toFixed( connWeight );
+	}
+	long[] acc = new long[ length ];
+	double[] scratch = new double[ length ];
+	for ( int i = 0; i < numInputs; ++i ) {
+		int[] in = stimuli[ i ];
+		int[] plane = planes[ i ];
+		for ( int p = 0; p < length; ++p )
+			plane[ p ] = Precision.toFixed( activation( functions[ i ],
+					Precision.fromFixed( in[ offset + p ] ) ) );
+	}
+	for ( int i = numInputs; i < functions.length; ++i ) {
+		int[] plane = planes[ i ];
+		if ( functions[ i ] == CONSTANT ) {
+			Arrays.fill( plane, 0, length, constantsFixed[ i ] );
+			continue;
+		}
+		int c = connStart[ i ];
+		int end = connStart[ i + 1 ];
+		if ( c == end )
+			Arrays.fill( acc, 0, length, 0L );
+		else {
+			int[] src = planes[ connSrc[ c ] ];
+			long w = connWeightFixed[ c ];
+			for ( int p = 0; p < length; ++p )
+				acc[ p ] = w * src[ p ];
+			for ( ++c; c < end; ++c ) {
+				src = planes[ connSrc[ c ] ];
+				w = connWeightFixed[ c ];
+				for ( int p = 0; p < length; ++p )
+					acc[ p ] += w * src[ p ];
+			}
+		}
+		for ( int p = 0; p < length; ++p )
+			scratch[ p ] = Precision.fromFixed( Precision.toFixed( acc[ p ] ) );
+		approximate( functions[ i ], scratch, length );
+		for ( int p = 0; p < length; ++p )
+			plane[ p ] = Precision.toFixed( scratch[ p ] );
+	}
+}
+
+/**
+ * Input dependency analysis. Inputs are partitioned into groups, such as the inputs that vary
+ * only along one axis of an image; a neuron depending on a single group has the same value
+ * wherever that group's inputs have the same values, so it need only be evaluated once per
+ * distinct value.
+ *
+ * @param inputGroups group (&gt;= 0) of each input neuron, or <code>DEPENDS_NONE</code> for
+ * inputs whose stimulus never changes
+ * @return for each neuron, the one group it depends on, <code>DEPENDS_NONE</code> if it only
+ * depends on constant inputs, or <code>DEPENDS_MANY</code>
+ */
+public int[] getDependencies( int[] inputGroups ) {
+	int[] deps = new int[ functions.length ];
+	for ( int i = 0; i < numInputs; ++i )
+		deps[ i ] = inputGroups[ i ];
+	for ( int i = numInputs; i < functions.length; ++i ) {
+		int dep = DEPENDS_NONE;
+		if ( functions[ i ] != CONSTANT ) {
+			for ( int c = connStart[ i ]; c < connStart[ i + 1 ]; ++c ) {
+				int srcDep = deps[ connSrc[ c ] ];
+				if ( srcDep == DEPENDS_NONE || srcDep == dep )
+					continue;
+				dep = ( dep == DEPENDS_NONE ) ? srcDep : DEPENDS_MANY;
+			}
+		}
+		deps[ i ] = dep;
+	}
+	return deps;
+}
+
+/**
+ * Structural signatures: a 64-bit hash of the subgraph feeding each neuron, combining the
+ * neuron's function (and the approximation in use), its constant if it has one, and the
+ * signature and weight of each incoming connection in order. Neurons of any two networks
+ * with equal signatures compute the same values from inputs with equal signatures, barring
+ * hash collisions.
+ *
+ * @param inputSignatures signature of the stimulus of each input neuron
+ * @return signature of each neuron
+ */
+public long[] getSignatures( long[] inputSignatures ) {
+	long[] signatures = new long[ functions.length ];
+	for ( int i = 0; i < numInputs; ++i )
+		signatures[ i ] = mix( mix( inputSignatures[ i ], functions[ i ] ), -1 );
+	for ( int i = numInputs; i < functions.length; ++i ) {
+		long h = mix( functions[ i ], approximation.ordinal() );
+		if ( functions[ i ] == CONSTANT )
+			h = mix( h, Double.doubleToLongBits( constants[ i ] ) );
+		else
+			for ( int c = connStart[ i ]; c < connStart[ i + 1 ]; ++c )
+				h = mix( mix( h, signatures[ connSrc[ c ] ] ), Double
+						.doubleToLongBits( connWeight[ c ] ) );
+		signatures[ i ] = h;
+	}
+	return signatures;
+}
+
+/**
+ * @param h
+ * @param v
+ * @return <code>h</code> combined with <code>v</code> and mixed (MurmurHash3 finalizer)
+ */
+private static long mix( long h, long v ) {
+	h = Long.rotateLeft( h, 23 ) * 0x9E3779B97F4A7C15L + v;
+	h = ( h ^ ( h >>> 33 ) ) * 0xFF51AFD7ED558CCDL;
+	h = ( h ^ ( h >>> 33 ) ) * 0xC4CEB9FE1A85EC53L;
+	return h ^ ( h >>> 33 );
+}
+
+/**
+ * Topology fingerprint: a 64-bit hash of the function of each neuron, the sources of its
+ * connections in order, and the output neurons, ignoring weights and constants. Networks of
+ * the same topology (see <code>sameTopology()</code>) have equal fingerprints.
+ *
+ * @return topology fingerprint
+ */
+public long getTopology() {
+	long h = mix( numInputs, functions.length );
+	for ( int i = 0; i < functions.length; ++i ) {
+		h = mix( h, functions[ i ] );
+		for ( int c = connStart[ i ]; c < connStart[ i + 1 ]; ++c )
+			h = mix( h, connSrc[ c ] );
+		h = mix( h, -1 );
+	}
+	for ( int i = 0; i < outIndices.length; ++i )
+		h = mix( h, outIndices[ i ] );
+	return h;
+}
+
+/**
+ * @param other
+ * @return true if <code>other</code> has the same neurons, functions, connections and outputs
+ * as this network, whatever their weights and constants
+ */
+public boolean sameTopology( CompiledNet other ) {
+	return numInputs == other.numInputs && Arrays.equals( functions, other.functions )
+			&& Arrays.equals( connStart, other.connStart ) && Arrays.equals( connSrc, other.connSrc )
+			&& Arrays.equals( outIndices, other.outIndices );
+}
+
+/**
+ * Neurons computing the same plane in every one of <code>nets</code>: inputs, and neurons with
+ * the same constant, or the same weights on connections from shared sources, in all of them.
+ *
+ * @param nets networks of the same topology
+ * @return <code>true</code> for each shared neuron
+ * @throws IllegalArgumentException if the topologies differ
+ * @see #activate(CompiledNet[], boolean[], double[][], int, double[][][], int, boolean[])
+ */
+public static boolean[] getShared( CompiledNet[] nets ) throws IllegalArgumentException {
+	CompiledNet first = nets[ 0 ];
+	boolean uniform = true;
+	for ( int n = 1; n < nets.length; ++n ) {
+		if ( !first.sameTopology( nets[ n ] ) )
+			throw new IllegalArgumentException( "networks differ in topology: " + first.getName()
+					+ ", " + nets[ n ].getName() );
+		uniform &= nets[ n ].approximation == first.approximation
+				&& nets[ n ].planeKernels == first.planeKernels;
+	}
+	boolean[] shared = new boolean[ first.functions.length ];
+	Arrays.fill( shared, 0, first.numInputs, true );
+	for ( int i = first.numInputs; uniform && i < shared.length; ++i ) {
+		boolean same = true;
+		if ( first.functions[ i ] == CONSTANT )
+			for ( int n = 1; same && n < nets.length; ++n )
+				same = Double.doubleToLongBits( nets[ n ].constants[ i ] ) == Double
+						.doubleToLongBits( first.constants[ i ] );
+		else
+			for ( int c = first.connStart[ i ]; same && c < first.connStart[ i + 1 ]; ++c ) {
+				same = shared[ first.connSrc[ c ] ];
+				for ( int n = 1; same && n < nets.length; ++n )
+					same = Double.doubleToLongBits( nets[ n ].connWeight[ c ] ) == Double
+							.doubleToLongBits( first.connWeight[ c ] );
+			}
+		shared[ i ] = same;
+	}
+	return shared;
+}
+
+/**
+ * Activate networks of the same topology in lockstep: each neuron is evaluated for every
+ * network before moving to the next, so the graph is traversed once for the whole batch,
+ * input planes are computed once, and each neuron in <code>shared</code> is evaluated for the
+ * first network only. Results are bitwise identical to activating each network on its own.
+ *
+ * @param nets networks of the same topology
+ * @param shared neurons computing the same plane in every network; see
+ * <code>getShared()</code>
+ * @param stimuli input planes, one per input neuron
+ * @param offset index of the first sample in each of <code>stimuli</code>
+ * @param planes one set of neuron planes per network; the plane of a shared neuron is in
+ * <code>planes[ 0 ]</code> only
+ * @param length number of samples
+ * @param mask <code>true</code> for each neuron to evaluate, or null for all; as for
+ * <code>activate( double[][], int, double[][], int, boolean[] )</code>, the caller must have
+ * filled the planes of unselected sources
+ */
+public static void activate( CompiledNet[] nets, boolean[] shared, double[][] stimuli,
+		int offset, double[][][] planes, int length, boolean[] mask ) {
+	CompiledNet first = nets[ 0 ];
+	double[][][] views = new double[ nets.length ][][];
+	for ( int n = 0; n < nets.length; ++n ) {
+		views[ n ] = planes[ n ].clone();
+		for ( int i = 0; i < shared.length; ++i )
+			if ( shared[ i ] )
+				views[ n ][ i ] = planes[ 0 ][ i ];
+	}
+	for ( int i = 0; i < first.numInputs; ++i ) {
+		if ( mask != null && !mask[ i ] )
+			continue;
+		System.arraycopy( stimuli[ i ], offset, planes[ 0 ][ i ], 0, length );
+		activation( first.functions[ i ], planes[ 0 ][ i ], length );
+	}
+	for ( int i = first.numInputs; i < first.functions.length; ++i ) {
+		if ( mask != null && !mask[ i ] )
+			continue;
+		if ( shared[ i ] )
+			first.evaluate( i, views[ 0 ], length );
+		else
+			for ( int n = 0; n < nets.length; ++n )
+				nets[ n ].evaluate( i, views[ n ], length );
+	}
+}
+
+/**
+ * @param mask <code>true</code> for each selected neuron
+ * @return <code>true</code> for each neuron that is a source of a connection into a selected
+ * neuron
+ */
+public boolean[] getSources( boolean[] mask ) {
+	boolean[] sources = new boolean[ functions.length ];
+	for ( int i = numInputs; i < functions.length; ++i ) {
+		if ( mask[ i ] && functions[ i ] != CONSTANT )
+			for ( int c = connStart[ i ]; c < connStart[ i + 1 ]; ++c )
+				sources[ connSrc[ c ] ] = true;
+	}
+	return sources;
+}
+
+/**
+ * @param planes neuron planes after <code>activate( double[][], int, double[][], int )</code>
+ * @param idx
+ * @return plane of output neuron at position <code>idx</code>
+ */
+public double[] getOutputPlane( double[][] planes, int idx ) {
+	return planes[ outIndices[ idx ] ];
+}
+
+/**
+ * @param length number of samples per plane
+ * @return neuron planes for <code>activate( double[][], int, double[][], int )</code>
+ */
+public double[][] newPlanes( int length ) {
+	return new double[ functions.length ][ length ];
+}
+
+/**
+ * @param length number of samples per plane
+ * @return neuron planes for <code>activate( float[][], int, float[][], int )</code>
+ */
+public float[][] newFloatPlanes( int length ) {
+	return new float[ functions.length ][ length ];
+}
+
+/**
+ * @param length number of samples per plane
+ * @return neuron planes for <code>activateFixed()</code>
+ */
+public int[][] newFixedPlanes( int length ) {
+	return new int[ functions.length ][ length ];
+}
+
+/**
+ * @return approximation applied to the activation functions of non-input neurons
+ */
+public ActivationApproximation getApproximation() {
+	return approximation;
+}
+
+/**
+ * @param anApproximation approximation to apply to the activation functions of non-input
+ * neurons; <code>EXACT</code> for results bitwise identical to <code>AnjiNet</code>
+ */
+public void setApproximation( ActivationApproximation anApproximation ) {
+	approximation = anApproximation;
+}
+
+/**
+ * @return true if plane activation uses <code>PlaneKernels</code>
+ */
+public boolean isPlaneKernels() {
+	return planeKernels;
+}
+
+/**
+ * @param aPlaneKernels true to evaluate planes with <code>PlaneKernels</code>, false for the
+ * plain scalar loops; both give identical results
+ */
+public void setPlaneKernels( boolean aPlaneKernels ) {
+	planeKernels = aPlaneKernels;
+}
+
+/**
+ * @param idx neuron position
+ * @return <code>ActivationOpcodes</code> opcode of neuron at position <code>idx</code>, or
+ * <code>CONSTANT</code>
+ */
+int getFunction( int idx ) {
+	return functions[ idx ];
+}
+
+/**
+ * @param idx neuron position
+ * @return value of <code>CONSTANT</code> neuron at position <code>idx</code>
+ */
+double getConstant( int idx ) {
+	return constants[ idx ];
+}
+
+/**
+ * @param idx neuron position
+ * @return innovation ID of neuron at position <code>idx</code>
+ */
+long getId( int idx ) {
+	return ids[ idx ];
+}
+
+/**
+ * @param idx neuron position
+ * @return index of the first incoming connection of neuron at position <code>idx</code>;
+ * <code>getConnectionStart( idx + 1 )</code> is one past its last
+ */
+int getConnectionStart( int idx ) {
+	return connStart[ idx ];
+}
+
+/**
+ * @param c connection index
+ * @return position of the source neuron of connection <code>c</code>
+ */
+int getConnectionSource( int c ) {
+	return connSrc[ c ];
+}
+
+/**
+ * @param c connection index
+ * @return weight of connection <code>c</code>
+ */
+double getConnectionWeight( int c ) {
+	return connWeight[ c ];
+}
+
+/**
+ * @param idx
+ * @return neuron position of output neuron at position <code>idx</code>
+ */
+public int getOutputIndex( int idx ) {
+	return outIndices[ idx ];
+}
+
+/**
+ * @return number of connections evaluated per activation
+ */
+public int getConnectionCount() {
+	return connStart[ functions.length ];
+}
+
+/**
+ * @return number input neurons
+ */
+public int getInputDimension() {
+	return numInputs;
+}
+
+/**
+ * @param idx
+ * @return innovation ID of input neuron at position <code>idx</code>
+ */
+public long getInputId( int idx ) {
+	return ids[ idx ];
+}
+
+/**
+ * @return the name.
+ */
+public String getName() {
+	return name;
+}
+
+/**
+ * @return number neurons evaluated per activation
+ */
+public int getNeuronCount() {
+	return functions.length;
+}
+
+/**
+ * @return number output neurons
+ */
+public int getOutputDimension() {
+	return outIndices.length;
+}
+
+/**
+ * @param idx
+ * @return activation function of output neuron at position <code>idx</code>
+ */
+public ActivationFunctionStrategy getOutputFunc( int idx ) {
+	return outFuncs[ idx ];
+}
+
+/**
+ * @param idx
+ * @return innovation ID of output neuron at position <code>idx</code>
+ */
+public long getOutputId( int idx ) {
+	return ids[ outIndices[ idx ] ];
+}
+
+/**
+ * @see java.lang.Object#toString()
+ */
+public String toString() {
+	return getName();
+}
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2004 Derek James and Philip Tucker
+ *
+ * This file is part of ANJI (Another NEAT Java Implementation).
+ *
+ * ANJI is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See
+ * the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ */
+package com.anji.nn;
+
+/**
+ * Feed-forward network evaluated by a class generated for that network alone. Implemented only
+ * by classes emitted by <code>NetClassGenerator</code>.
+ *
+ * @see com.anji.nn.NetClassGenerator
+ */
+public interface GeneratedNet {
+
+/**
+ * Activate the network for a single sample.
+ *
+ * @param stimuli input values, one per input neuron
+ * @param result destination for output values, one per output neuron
+ */
+public void activate( double[] stimuli, double[] result );
+
+/**
+ * Activate the network for <code>length</code> samples.
+ *
+ * @param stimuli input planes, one per input neuron; element <code>offset + p</code> is the
+ * stimulus for sample <code>p</code>
+ * @param offset index of the first sample in each of <code>stimuli</code>
+ * @param outputs destination planes, one per output neuron; element <code>p</code> receives
+ * the output for sample <code>p</code>
+ * @param length number of samples
+ */
+public void activate( double[][] stimuli, int offset, double[][] outputs, int length );
+
+}
@@ -0,0 +1,589 @@
+/*
+ * Copyright (C) 2004 Derek James and Philip Tucker
+ *
+ * This file is part of ANJI (Another NEAT Java Implementation).
+ *
+ * ANJI is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See
+ * the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ */
+package com.anji.nn;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.anji.activationFunction.ActivationOpcodes;
+
+/**
+ * Generates a Java class evaluating one <code>CompiledNet</code> as straight-line code: every
+ * neuron value is a local variable, every weight a constant, and the common activation
+ * functions are inlined as <code>Math</code> calls. The JIT then sees a single monomorphic
+ * method per network instead of a loop over opcodes. Each class is defined by its own class
+ * loader, so it is unloaded once the returned <code>GeneratedNet</code> is no longer
+ * referenced.
+ * <p>
+ * Class files are emitted directly at version 49 (Java 5), which needs no stack map frames.
+ * Each expression matches <code>CompiledNet</code> operation for operation, and methods are
+ * <code>strictfp</code>, so results are bitwise identical.
+ *
+ * @see com.anji.nn.CompiledNet
+ */
+public class NetClassGenerator {
+
+private static final String PACKAGE = "com/anji/nn/generated/";
+
+// HotSpot does not JIT compile methods with more bytecode than this (-XX:HugeMethodLimit), and
+// an interpreted straight-line network is slower than CompiledNet
+private static final int MAX_METHOD_SIZE = 8000;
+
+private static int classCount = 0;
+
+// class file constants
+private static final int CONSTANT_UTF8 = 1;
+
+private static final int CONSTANT_INTEGER = 3;
+
+private static final int CONSTANT_DOUBLE = 6;
+
+private static final int CONSTANT_CLASS = 7;
+
+private static final int CONSTANT_METHODREF = 10;
+
+private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+private static final int ACC_PUBLIC = 0x0001;
+
+private static final int ACC_FINAL = 0x0010;
+
+private static final int ACC_SUPER = 0x0020;
+
+private static final int ACC_STRICT = 0x0800;
+
+// opcodes
+private static final int ICONST_0 = 0x03;
+
+private static final int DCONST_0 = 0x0e;
+
+private static final int DCONST_1 = 0x0f;
+
+private static final int BIPUSH = 0x10;
+
+private static final int SIPUSH = 0x11;
+
+private static final int LDC_W = 0x13;
+
+private static final int LDC2_W = 0x14;
+
+private static final int ILOAD = 0x15;
+
+private static final int DLOAD = 0x18;
+
+private static final int ALOAD_0 = 0x2a;
+
+private static final int ALOAD_1 = 0x2b;
+
+private static final int ALOAD_2 = 0x2c;
+
+private static final int ALOAD_3 = 0x2d;
+
+private static final int DALOAD = 0x31;
+
+private static final int AALOAD = 0x32;
+
+private static final int ISTORE = 0x36;
+
+private static final int DSTORE = 0x39;
+
+private static final int DASTORE = 0x52;
+
+private static final int IADD = 0x60;
+
+private static final int DADD = 0x63;
+
+private static final int DSUB = 0x67;
+
+private static final int DMUL = 0x6b;
+
+private static final int DDIV = 0x6f;
+
+private static final int DNEG = 0x77;
+
+private static final int IINC = 0x84;
+
+private static final int IF_ICMPGE = 0xa2;
+
+private static final int GOTO = 0xa7;
+
+private static final int RETURN = 0xb1;
+
+private static final int INVOKESPECIAL = 0xb7;
+
+private static final int INVOKESTATIC = 0xb8;
+
+private static final int WIDE = 0xc4;
+
+/**
+ * Growable big-endian byte buffer.
+ */
+private static class Bytes {
+
+private byte[] buf = new byte[ 1024 ];
+
+private int length = 0;
+
+void u1( int b ) {
+	if ( length == buf.length ) {
+		byte[] newBuf = new byte[ buf.length * 2 ];
+		System.arraycopy( buf, 0, newBuf, 0, length );
+		buf = newBuf;
+	}
+	buf[ length++ ] = (byte) b;
+}
+
+void u2( int s ) {
+	u1( s >>> 8 );
+	u1( s );
+}
+
+void u4( int i ) {
+	u2( i >>> 16 );
+	u2( i );
+}
+
+void u8( long l ) {
+	u4( (int) ( l >>> 32 ) );
+	u4( (int) l );
+}
+
+void bytes( Bytes b ) {
+	for ( int i = 0; i < b.length; ++i )
+		u1( b.buf[ i ] );
+}
+
+void patch2( int pos, int s ) {
+	buf[ pos ] = (byte) ( s >>> 8 );
+	buf[ pos + 1 ] = (byte) s;
+}
+
+byte[] toArray() {
+	byte[] result = new byte[ length ];
+	System.arraycopy( buf, 0, result, 0, length );
+	return result;
+}
+}
+
+/**
+ * Class file constant pool, de-duplicating entries.
+ */
+private static class ConstantPool {
+
+private final Bytes bytes = new Bytes();
+
+private final Map<String, Integer> entries = new HashMap<String, Integer>();
+
+private int count = 1;
+
+private int add( String key, Bytes entry, int slots ) {
+	Integer idx = entries.get( key );
+	if ( idx == null ) {
+		idx = new Integer( count );
+		entries.put( key, idx );
+		bytes.bytes( entry );
+		count += slots;
+	}
+	return idx.intValue();
+}
+
+int utf8( String s ) {
+	Bytes b = new Bytes();
+	b.u1( CONSTANT_UTF8 );
+	try {
+		byte[] utf = s.getBytes( "UTF-8" );
+		b.u2( utf.length );
+		for ( int i = 0; i < utf.length; ++i )
+			b.u1( utf[ i ] );
+	}
+	catch ( java.io.UnsupportedEncodingException e ) {
+		throw new IllegalStateException( e.toString() );
+	}
+	return add( "U" + s, b, 1 );
+}
+
+int classRef( String name ) {
+	Bytes b = new Bytes();
+	b.u1( CONSTANT_CLASS );
+	b.u2( utf8( name ) );
+	return add( "C" + name, b, 1 );
+}
+
+int methodRef( String owner, String name, String descriptor ) {
+	Bytes nt = new Bytes();
+	nt.u1( CONSTANT_NAME_AND_TYPE );
+	nt.u2( utf8( name ) );
+	nt.u2( utf8( descriptor ) );
+	int ntIdx = add( "N" + name + descriptor, nt, 1 );
+	Bytes b = new Bytes();
+	b.u1( CONSTANT_METHODREF );
+	b.u2( classRef( owner ) );
+	b.u2( ntIdx );
+	return add( "M" + owner + "." + name + descriptor, b, 1 );
+}
+
+int integer( int i ) {
+	Bytes b = new Bytes();
+	b.u1( CONSTANT_INTEGER );
+	b.u4( i );
+	return add( "I" + i, b, 1 );
+}
+
+int doubleConst( double d ) {
+	long bits = Double.doubleToRawLongBits( d );
+	Bytes b = new Bytes();
+	b.u1( CONSTANT_DOUBLE );
+	b.u8( bits );
+	return add( "D" + bits, b, 2 );
+}
+}
+
+/**
+ * Class loader defining a single generated class.
+ */
+private static class Loader extends ClassLoader {
+
+Loader() {
+	super( GeneratedNet.class.getClassLoader() );
+}
+
+Class<?> define( String name, byte[] b ) {
+	return defineClass( name, b, 0, b.length );
+}
+}
+
+private final CompiledNet net;
+
+private final ConstantPool pool = new ConstantPool();
+
+private Bytes code;
+
+private int firstNeuronLocal;
+
+private NetClassGenerator( CompiledNet aNet ) {
+	net = aNet;
+}
+
+/**
+ * Generate, load and instantiate a class evaluating <code>net</code>.
+ *
+ * @param net
+ * @return new instance of the generated class
+ * @throws IllegalArgumentException if <code>net</code> is too large for a single method
+ */
+public static GeneratedNet generate( CompiledNet net ) throws IllegalArgumentException {
+	String name;
+	synchronized ( NetClassGenerator.class ) {
+		name = PACKAGE + "Net" + ( classCount++ );
+	}
+	byte[] classFile = new NetClassGenerator( net ).generateClass( name );
+	try {
+		Class<?> cls = new Loader().define( name.replace( '/', '.' ), classFile );
+		return (GeneratedNet) cls.newInstance();
+	}
+	catch ( InstantiationException e ) {
+		throw new IllegalStateException( "can not instantiate generated class for " + net + ": " + e );
+	}
+	catch ( IllegalAccessException e ) {
+		throw new IllegalStateException( "can not instantiate generated class for " + net + ": " + e );
+	}
+}
+
+/**
+ * @param name internal class name
+ * @return class file bytes
+ */
+private byte[] generateClass( String name ) {
+	int thisClass = pool.classRef( name );
+	int superClass = pool.classRef( "java/lang/Object" );
+	int iface = pool.classRef( GeneratedNet.class.getName().replace( '.', '/' ) );
+
+	Bytes methods = new Bytes();
+	methods.u2( 3 );
+	writeMethod( methods, "<init>", "()V", ACC_PUBLIC, 1, 1, constructorCode() );
+	writeMethod( methods, "activate", "([D[D)V", ACC_PUBLIC | ACC_STRICT, 8, sampleLocals(),
+			sampleCode() );
+	writeMethod( methods, "activate", "([[DI[[DI)V", ACC_PUBLIC | ACC_STRICT, 8, batchLocals(),
+			batchCode() );
+	if ( pool.count > 0xffff )
+		throw new IllegalArgumentException( "network too large to generate: " + net );
+
+	Bytes cls = new Bytes();
+	cls.u4( 0xCAFEBABE );
+	cls.u2( 0 );
+	cls.u2( 49 );
+	cls.u2( pool.count );
+	cls.bytes( pool.bytes );
+	cls.u2( ACC_PUBLIC | ACC_FINAL | ACC_SUPER );
+	cls.u2( thisClass );
+	cls.u2( superClass );
+	cls.u2( 1 );
+	cls.u2( iface );
+	cls.u2( 0 ); // fields
+	cls.bytes( methods );
+	cls.u2( 0 ); // attributes
+	return cls.toArray();
+}
+
+private void writeMethod( Bytes out, String name, String descriptor, int access, int maxStack,
+		int maxLocals, Bytes body ) {
+	if ( body.length > MAX_METHOD_SIZE )
+		throw new IllegalArgumentException( "network too large to generate: " + net );
+	if ( maxLocals > 0xffff )
+		throw new IllegalArgumentException( "network too large to generate: " + net );
+	out.u2( access );
+	out.u2( pool.utf8( name ) );
+	out.u2( pool.utf8( descriptor ) );
+	out.u2( 1 );
+	out.u2( pool.utf8( "Code" ) );
+	out.u4( 12 + body.length );
+	out.u2( maxStack );
+	out.u2( maxLocals );
+	out.u4( body.length );
+	out.bytes( body );
+	out.u2( 0 ); // exception table
+	out.u2( 0 ); // attributes
+}
+
+private Bytes constructorCode() {
+	code = new Bytes();
+	code.u1( ALOAD_0 );
+	code.u1( INVOKESPECIAL );
+	code.u2( pool.methodRef( "java/lang/Object", "<init>", "()V" ) );
+	code.u1( RETURN );
+	return code;
+}
+
+// locals of activate( double[] stimuli, double[] result ): this, stimuli, result, neurons
+private int sampleLocals() {
+	return 3 + 2 * net.getNeuronCount();
+}
+
+private Bytes sampleCode() {
+	code = new Bytes();
+	firstNeuronLocal = 3;
+	for ( int i = 0; i < net.getInputDimension(); ++i ) {
+		code.u1( ALOAD_1 );
+		pushInt( i );
+		code.u1( DALOAD );
+		storeNeuron( i );
+	}
+	neuronsCode();
+	for ( int i = 0; i < net.getOutputDimension(); ++i ) {
+		code.u1( ALOAD_2 );
+		pushInt( i );
+		local( DLOAD, neuronLocal( net.getOutputIndex( i ) ) );
+		code.u1( DASTORE );
+	}
+	code.u1( RETURN );
+	return code;
+}
+
+// locals of activate( double[][] stimuli, int offset, double[][] outputs, int length ):
+// this, stimuli, offset, outputs, length, p, neurons
+private int batchLocals() {
+	return 6 + 2 * net.getNeuronCount();
+}
+
+private Bytes batchCode() {
+	code = new Bytes();
+	firstNeuronLocal = 6;
+	code.u1( ICONST_0 );
+	local( ISTORE, 5 );
+
+	// loop condition: p < length
+	int loop = code.length;
+	local( ILOAD, 5 );
+	local( ILOAD, 4 );
+	int exitBranch = code.length;
+	code.u1( IF_ICMPGE );
+	code.u2( 0 );
+
+	for ( int i = 0; i < net.getInputDimension(); ++i ) {
+		code.u1( ALOAD_1 );
+		pushInt( i );
+		code.u1( AALOAD );
+		local( ILOAD, 2 );
+		local( ILOAD, 5 );
+		code.u1( IADD );
+		code.u1( DALOAD );
+		storeNeuron( i );
+	}
+	neuronsCode();
+	for ( int i = 0; i < net.getOutputDimension(); ++i ) {
+		code.u1( ALOAD_3 );
+		pushInt( i );
+		code.u1( AALOAD );
+		local( ILOAD, 5 );
+		local( DLOAD, neuronLocal( net.getOutputIndex( i ) ) );
+		code.u1( DASTORE );
+	}
+
+	code.u1( IINC );
+	code.u1( 5 );
+	code.u1( 1 );
+	int back = code.length;
+	code.u1( GOTO );
+	code.u2( loop - back );
+	int exit = code.length;
+	code.u1( RETURN );
+
+	if ( exit - exitBranch > MAX_METHOD_SIZE )
+		throw new IllegalArgumentException( "network too large to generate: " + net );
+	code.patch2( exitBranch + 1, exit - exitBranch );
+	return code;
+}
+
+/**
+ * Weighted sum and activation of every non-input neuron, in topological order.
+ */
+private void neuronsCode() {
+	for ( int i = net.getInputDimension(); i < net.getNeuronCount(); ++i ) {
+		if ( net.getFunction( i ) == CompiledNet.CONSTANT ) {
+			pushDouble( net.getConstant( i ) );
+			local( DSTORE, neuronLocal( i ) );
+			continue;
+		}
+		code.u1( DCONST_0 );
+		for ( int c = net.getConnectionStart( i ); c < net.getConnectionStart( i + 1 ); ++c ) {
+			local( DLOAD, neuronLocal( net.getConnectionSource( c ) ) );
+			pushDouble( net.getConnectionWeight( c ) );
+			code.u1( DMUL );
+			code.u1( DADD );
+		}
+		storeNeuron( i );
+	}
+}
+
+/**
+ * Stores the value on top of the stack as the sum of neuron <code>idx</code>, then replaces
+ * it with its clamped activation.
+ *
+ * @param idx
+ */
+private void storeNeuron( int idx ) {
+	int local = neuronLocal( idx );
+	local( DSTORE, local );
+	int opcode = net.getFunction( idx );
+	switch ( opcode ) {
+	case ActivationOpcodes.IDENTITY:
+		local( DLOAD, local );
+		pushDouble( -Double.MAX_VALUE );
+		invokeMath( "max", "(DD)D" );
+		pushDouble( Double.MAX_VALUE );
+		invokeMath( "min", "(DD)D" );
+		break;
+	case ActivationOpcodes.GAUSSIAN:
+	case ActivationOpcodes.BIPOLAR_GAUSSIAN:
+		local( DLOAD, local );
+		code.u1( DNEG );
+		local( DLOAD, local );
+		code.u1( DMUL );
+		invokeMath( "exp", "(D)D" );
+		if ( opcode == ActivationOpcodes.BIPOLAR_GAUSSIAN )
+			toBipolar();
+		break;
+	case ActivationOpcodes.SIGMOID:
+	case ActivationOpcodes.BIPOLAR_SIGMOID:
+		code.u1( DCONST_1 );
+		code.u1( DCONST_1 );
+		local( DLOAD, local );
+		code.u1( DNEG );
+		invokeMath( "exp", "(D)D" );
+		code.u1( DADD );
+		code.u1( DDIV );
+		if ( opcode == ActivationOpcodes.BIPOLAR_SIGMOID )
+			toBipolar();
+		break;
+	case ActivationOpcodes.SINE:
+		local( DLOAD, local );
+		invokeMath( "sin", "(D)D" );
+		break;
+	case ActivationOpcodes.COSINE:
+		local( DLOAD, local );
+		invokeMath( "cos", "(D)D" );
+		break;
+	default:
+		// remaining functions are bounded, so clamping is a no-op
+		pushInt( opcode );
+		local( DLOAD, local );
+		code.u1( INVOKESTATIC );
+		code.u2( pool.methodRef( ActivationOpcodes.class.getName().replace( '.', '/' ), "valueAt",
+				"(ID)D" ) );
+	}
+	local( DSTORE, local );
+}
+
+// v * 2.0 - 1.0
+private void toBipolar() {
+	pushDouble( 2.0 );
+	code.u1( DMUL );
+	code.u1( DCONST_1 );
+	code.u1( DSUB );
+}
+
+private void invokeMath( String name, String descriptor ) {
+	code.u1( INVOKESTATIC );
+	code.u2( pool.methodRef( "java/lang/Math", name, descriptor ) );
+}
+
+private int neuronLocal( int idx ) {
+	return firstNeuronLocal + 2 * idx;
+}
+
+private void local( int opcode, int idx ) {
+	if ( idx > 0xff ) {
+		code.u1( WIDE );
+		code.u1( opcode );
+		code.u2( idx );
+	}
+	else {
+		code.u1( opcode );
+		code.u1( idx );
+	}
+}
+
+private void pushInt( int i ) {
+	if ( i >= -1 && i <= 5 )
+		code.u1( ICONST_0 + i );
+	else if ( i >= Byte.MIN_VALUE && i <= Byte.MAX_VALUE ) {
+		code.u1( BIPUSH );
+		code.u1( i );
+	}
+	else if ( i >= Short.MIN_VALUE && i <= Short.MAX_VALUE ) {
+		code.u1( SIPUSH );
+		code.u2( i );
+	}
+	else {
+		code.u1( LDC_W );
+		code.u2( pool.integer( i ) );
+	}
+}
+
+private void pushDouble( double d ) {
+	if ( Double.doubleToRawLongBits( d ) == 0L )
+		code.u1( DCONST_0 );
+	else if ( d == 1.0d )
+		code.u1( DCONST_1 );
+	else {
+		code.u1( LDC2_W );
+		code.u2( pool.doubleConst( d ) );
+	}
+}
+
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright (C) 2004 Derek James and Philip Tucker
+ *
+ * This file is part of ANJI (Another NEAT Java Implementation).
+ *
+ * ANJI is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See
+ * the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ */
+package com.anji.nn;
+
+import com.anji.activationFunction.ActivationFunctionStrategy;
+import com.anji.activationFunction.ActivationOpcodes;
+
+/**
+ * Simplifies a <code>CompiledNet</code> before it is activated many times. Passes, in order
+ * for each neuron:
+ * <ul>
+ * <li>zero-weight pruning: drops connections with <code>|weight| &lt;= weightThreshold</code>
+ * </li>
+ * <li>identity collapsing: a hidden <code>IDENTITY</code> neuron fed by a single connection of
+ * weight +/-1 is bypassed, its consumers reading the source directly with the sign folded into
+ * their weights</li>
+ * <li>duplicate merging (optional): connections from the same source into the same neuron are
+ * merged into one</li>
+ * <li>constant folding: a neuron fed only by constant inputs (such as bias) and other constant
+ * neurons is evaluated once and becomes a <code>CONSTANT</code> neuron</li>
+ * <li>dead neuron elimination: neurons with no path to an output are removed</li>
+ * </ul>
+ * With the default threshold of 0 and merging off, the optimized network produces the same
+ * outputs bit for bit (barring NaN sources of zero-weight connections), since every remaining
+ * sum is accumulated in the original order. A positive threshold and merging reassociate or
+ * drop terms and may change the last bits of a sum.
+ * <p>
+ * Counts of removed neurons and connections are accumulated over all networks optimized by an
+ * instance; see <code>toString()</code>.
+ *
+ * @see com.anji.nn.CompiledNet
+ */
+public class NetOptimizer {
+
+private final double weightThreshold;
+
+private final boolean mergeDuplicates;
+
+private long networks = 0;
+
+private long neuronsBefore = 0;
+
+private long neuronsAfter = 0;
+
+private long connectionsBefore = 0;
+
+private long connectionsAfter = 0;
+
+private long foldedNeurons = 0;
+
+private long collapsedNeurons = 0;
+
+private long zeroConnections = 0;
+
+private long mergedConnections = 0;
+
+/**
+ * Optimizer that does not change network outputs.
+ */
+public NetOptimizer() {
+	this( 0.0d, false );
+}
+
+/**
+ * @param aWeightThreshold connections with weights no larger than this in magnitude are
+ * removed
+ * @param aMergeDuplicates true to merge connections between the same neurons
+ */
+public NetOptimizer( double aWeightThreshold, boolean aMergeDuplicates ) {
+	if ( aWeightThreshold < 0 )
+		throw new IllegalArgumentException( "weight threshold must be >= 0" );
+	weightThreshold = aWeightThreshold;
+	mergeDuplicates = aMergeDuplicates;
+}
+
+/**
+ * Optimize <code>net</code> for inputs of which some are the same for every activation.
+ *
+ * @param net
+ * @param constantInputs <code>true</code> for each input whose stimulus is always the
+ * corresponding element of <code>inputValues</code>
+ * @param inputValues stimulus of each constant input
+ * @return optimized network with the same inputs and outputs as <code>net</code>
+ */
+public CompiledNet optimize( CompiledNet net, boolean[] constantInputs, double[] inputValues ) {
+	int numInputs = net.getInputDimension();
+	int numNeurons = net.getNeuronCount();
+
+	// constant value of each neuron, where known
+	boolean[] known = new boolean[ numNeurons ];
+	double[] value = new double[ numNeurons ];
+	for ( int i = 0; i < numInputs; ++i ) {
+		if ( constantInputs[ i ] ) {
+			known[ i ] = true;
+			value[ i ] = CompiledNet.activation( net.getFunction( i ), inputValues[ i ] );
+		}
+	}
+
+	// neurons bypassed by identity collapsing read as alias[ i ] * aliasSign[ i ]
+	int[] alias = new int[ numNeurons ];
+	double[] aliasSign = new double[ numNeurons ];
+	for ( int i = 0; i < numNeurons; ++i ) {
+		alias[ i ] = i;
+		aliasSign[ i ] = 1.0d;
+	}
+	boolean[] isOutput = new boolean[ numNeurons ];
+	for ( int i = 0; i < net.getOutputDimension(); ++i )
+		isOutput[ net.getOutputIndex( i ) ] = true;
+
+	int[] functions = new int[ numNeurons ];
+	double[] constants = new double[ numNeurons ];
+	int[][] srcs = new int[ numNeurons ][];
+	double[][] weights = new double[ numNeurons ][];
+	long folded = 0, collapsed = 0, zeros = 0, merged = 0;
+
+	for ( int i = 0; i < numNeurons; ++i ) {
+		functions[ i ] = net.getFunction( i );
+		constants[ i ] = net.getConstant( i );
+		int start = ( i < numInputs ) ? 0 : net.getConnectionStart( i );
+		int end = ( i < numInputs ) ? 0 : net.getConnectionStart( i + 1 );
+		int[] src = new int[ end - start ];
+		double[] w = new double[ end - start ];
+		int n = 0;
+		for ( int c = start; c < end; ++c ) {
+			double weight = net.getConnectionWeight( c );
+			if ( Math.abs( weight ) <= weightThreshold ) {
+				++zeros;
+				continue;
+			}
+			int s = net.getConnectionSource( c );
+			src[ n ] = alias[ s ];
+			w[ n ] = weight * aliasSign[ s ];
+			++n;
+		}
+
+		if ( mergeDuplicates ) {
+			int m = 0;
+			for ( int k = 0; k < n; ++k ) {
+				int j = 0;
+				while ( j < m && src[ j ] != src[ k ] )
+					++j;
+				if ( j < m ) {
+					w[ j ] += w[ k ];
+					++merged;
+				}
+				else {
+					src[ m ] = src[ k ];
+					w[ m ] = w[ k ];
+					++m;
+				}
+			}
+			n = m;
+		}
+
+		srcs[ i ] = new int[ n ];
+		weights[ i ] = new double[ n ];
+		System.arraycopy( src, 0, srcs[ i ], 0, n );
+		System.arraycopy( w, 0, weights[ i ], 0, n );
+		if ( i < numInputs )
+			continue;
+
+		if ( functions[ i ] == CompiledNet.CONSTANT ) {
+			known[ i ] = true;
+			value[ i ] = constants[ i ];
+			srcs[ i ] = new int[ 0 ];
+			weights[ i ] = new double[ 0 ];
+			continue;
+		}
+
+		// constant folding, accumulating in the same order as CompiledNet
+		boolean allKnown = true;
+		for ( int k = 0; k < n && allKnown; ++k )
+			allKnown = known[ src[ k ] ];
+		if ( allKnown ) {
+			double sum = 0.0d;
+			for ( int k = 0; k < n; ++k )
+				sum += w[ k ] * value[ src[ k ] ];
+			known[ i ] = true;
+			value[ i ] = CompiledNet.activation( functions[ i ], sum );
+			functions[ i ] = CompiledNet.CONSTANT;
+			constants[ i ] = value[ i ];
+			srcs[ i ] = new int[ 0 ];
+			weights[ i ] = new double[ 0 ];
+			++folded;
+			continue;
+		}
+
+		// identity collapsing; 0 + w * v == v exactly for w = +/-1, including the clamp
+		if ( functions[ i ] == ActivationOpcodes.IDENTITY && n == 1 && !isOutput[ i ]
+				&& Math.abs( w[ 0 ] ) == 1.0d ) {
+			alias[ i ] = src[ 0 ];
+			aliasSign[ i ] = w[ 0 ];
+			++collapsed;
+		}
+	}
+
+	// dead neuron elimination, keeping every input
+	boolean[] live = new boolean[ numNeurons ];
+	for ( int i = 0; i < numInputs; ++i )
+		live[ i ] = true;
+	for ( int i = 0; i < net.getOutputDimension(); ++i )
+		live[ net.getOutputIndex( i ) ] = true;
+	for ( int i = numNeurons - 1; i >= numInputs; --i ) {
+		if ( live[ i ] )
+			for ( int k = 0; k < srcs[ i ].length; ++k )
+				live[ srcs[ i ][ k ] ] = true;
+	}
+
+	int[] newIndex = new int[ numNeurons ];
+	int newNeurons = 0;
+	int newConns = 0;
+	for ( int i = 0; i < numNeurons; ++i ) {
+		if ( live[ i ] ) {
+			newIndex[ i ] = newNeurons++;
+			newConns += srcs[ i ].length;
+		}
+	}
+
+	int[] newFunctions = new int[ newNeurons ];
+	double[] newConstants = new double[ newNeurons ];
+	long[] newIds = new long[ newNeurons ];
+	int[] connStart = new int[ newNeurons + 1 ];
+	int[] connSrc = new int[ newConns ];
+	double[] connWeight = new double[ newConns ];
+	int c = 0;
+	for ( int i = 0; i < numNeurons; ++i ) {
+		if ( !live[ i ] )
+			continue;
+		int j = newIndex[ i ];
+		newFunctions[ j ] = functions[ i ];
+		newConstants[ j ] = constants[ i ];
+		newIds[ j ] = net.getId( i );
+		connStart[ j ] = c;
+		for ( int k = 0; k < srcs[ i ].length; ++k ) {
+			connSrc[ c ] = newIndex[ srcs[ i ][ k ] ];
+			connWeight[ c ] = weights[ i ][ k ];
+			++c;
+		}
+	}
+	connStart[ newNeurons ] = c;
+
+	int[] outIndices = new int[ net.getOutputDimension() ];
+	ActivationFunctionStrategy[] outFuncs = new ActivationFunctionStrategy[ outIndices.length ];
+	for ( int i = 0; i < outIndices.length; ++i ) {
+		outIndices[ i ] = newIndex[ net.getOutputIndex( i ) ];
+		outFuncs[ i ] = net.getOutputFunc( i );
+	}
+
+	CompiledNet result = new CompiledNet( numInputs, newFunctions, newConstants, newIds, connStart,
+			connSrc, connWeight, outIndices, outFuncs, net.getName() );
+	result.setPlaneKernels( net.isPlaneKernels() );
+	result.setApproximation( net.getApproximation() );
+
+	synchronized ( this ) {
+		++networks;
+		neuronsBefore += numNeurons;
+		neuronsAfter += newNeurons;
+		connectionsBefore += net.getConnectionCount();
+		connectionsAfter += newConns;
+		foldedNeurons += folded;
+		collapsedNeurons += collapsed;
+		zeroConnections += zeros;
+		mergedConnections += merged;
+	}
+	return result;
+}
+
+/**
+ * @return number of neurons removed from all networks optimized so far
+ */
+public synchronized long getRemovedNeurons() {
+	return neuronsBefore - neuronsAfter;
+}
+
+/**
+ * @return number of connections removed from all networks optimized so far
+ */
+public synchronized long getRemovedConnections() {
+	return connectionsBefore - connectionsAfter;
+}
+
+/**
+ * Reset the accumulated counts.
+ */
+public synchronized void reset() {
+	networks = neuronsBefore = neuronsAfter = connectionsBefore = connectionsAfter = 0;
+	foldedNeurons = collapsedNeurons = zeroConnections = mergedConnections = 0;
+}
+
+/**
+ * @see java.lang.Object#toString()
+ */
+public synchronized String toString() {
+	return "optimized " + networks + " networks: neurons " + neuronsBefore + " -> " + neuronsAfter
+			+ " (" + foldedNeurons + " folded to constants, "
+			+ collapsedNeurons + " identities collapsed), connections " + connectionsBefore + " -> "
+			+ connectionsAfter + " (" + zeroConnections + " zero weight, " + mergedConnections
+			+ " duplicates merged)";
+}
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2004 Derek James and Philip Tucker
+ *
+ * This file is part of ANJI (Another NEAT Java Implementation).
+ *
+ * ANJI is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See
+ * the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ */
+package com.anji.nn;
+
+/**
+ * Number format of plane evaluation: <code>double</code>, <code>float</code>, or signed 16.16
+ * fixed point in an <code>int</code>. Fixed-point values saturate at
+ * <code>+/-FIXED_MAX</code>; NaN converts to 0.
+ *
+ * @see com.anji.nn.CompiledNet#activate(float[][], int, float[][], int)
+ * @see com.anji.nn.CompiledNet#activateFixed(int[][], int, int[][], int)
+ */
+public enum Precision {
+DOUBLE( "double" ), FLOAT( "float" ), FIXED( "fixed" );
+
+/**
+ * number of fractional bits of a fixed-point value
+ */
+public static final int FIXED_SHIFT = 16;
+
+/**
+ * fixed-point 1.0
+ */
+public static final int FIXED_ONE = 1 << FIXED_SHIFT;
+
+/**
+ * largest fixed-point value, just under 32768.0
+ */
+public static final int FIXED_MAX = Integer.MAX_VALUE;
+
+private final String name;
+
+private Precision( String aName ) {
+	name = aName;
+}
+
+/**
+ * @param aName <code>double</code>, <code>float</code> or <code>fixed</code>
+ * @return precision named <code>aName</code>
+ * @throws IllegalArgumentException if there is no such precision
+ */
+public static Precision get( String aName ) {
+	for ( Precision p : values() )
+		if ( p.name.equalsIgnoreCase( aName.trim() ) )
+			return p;
+	throw new IllegalArgumentException( "unknown precision: " + aName );
+}
+
+/**
+ * @see java.lang.Enum#toString()
+ */
+public String toString() {
+	return name;
+}
+
+/**
+ * @param x
+ * @return <code>x</code> rounded to the nearest fixed-point value, saturated to
+ * <code>+/-FIXED_MAX</code>; NaN gives 0
+ */
+public static int toFixed( double x ) {
+	double scaled = Math.rint( x * FIXED_ONE );
+	if ( scaled >= FIXED_MAX )
+		return FIXED_MAX;
+	if ( scaled <= -FIXED_MAX )
+		return -FIXED_MAX;
+	return (int) scaled;
+}
+
+/**
+ * @param x sum of products of two fixed-point values, with <code>2 * FIXED_SHIFT</code>
+ * fractional bits
+ * @return <code>x</code> rounded to the nearest fixed-point value, saturated to
+ * <code>+/-FIXED_MAX</code>
+ */
+public static int toFixed( long x ) {
+	long rounded = ( x + ( 1L << ( FIXED_SHIFT - 1 ) ) ) >> FIXED_SHIFT;
+	if ( rounded >= FIXED_MAX )
+		return FIXED_MAX;
+	if ( rounded <= -FIXED_MAX )
+		return -FIXED_MAX;
+	return (int) rounded;
+}
+
+/**
+ * @param x
+ * @return fixed-point <code>x</code> as a <code>double</code>
+ */
+public static double fromFixed( int x ) {
+	return (double) x / FIXED_ONE;
+}
+
+/**
+ * @param x
+ * @return <code>x</code> rounded to <code>float</code>, saturated to
+ * <code>+/-Float.MAX_VALUE</code>
+ */
+public static float toFloat( double x ) {
+	return (float) Math.min( Math.max( x, -Float.MAX_VALUE ), Float.MAX_VALUE );
+}
+
+/**
+ * @param x
+ * @return elements of <code>x</code> rounded to <code>float</code>
+ */
+public static float[] toFloat( double[] x ) {
+	float[] result = new float[ x.length ];
+	for ( int i = 0; i < x.length; ++i )
+		result[ i ] = toFloat( x[ i ] );
+	return result;
+}
+
+/**
+ * @param x
+ * @return elements of <code>x</code> rounded to fixed point
+ */
+public static int[] toFixed( double[] x ) {
+	int[] result = new int[ x.length ];
+	for ( int i = 0; i < x.length; ++i )
+		result[ i ] = toFixed( x[ i ] );
+	return result;
+}
+
+}
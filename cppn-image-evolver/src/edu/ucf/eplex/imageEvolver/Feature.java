@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2010 Brian Woolley
+ *
+ * This file is part of the octopusArm simulator.
+ *
+ * The octopusArm simulator is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ */
+package edu.ucf.eplex.imageEvolver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A feature of a grayscale image that the fitness function compares with the same feature of
+ * the targets. Each feature is itself an 8-bit image, normalized to [0, 1] by a threshold
+ * taken from the target.
+ *
+ * @see FeatureSet
+ */
+public enum Feature {
+	/** the gray level of each pixel, normalized by the highest gray level of the target */
+	PIXELS("pixels"),
+	/** the gradient magnitude of each pixel, normalized by the range of the target gradient */
+	GRADIENT("gradient"),
+	/**
+	 * the mean gray level of each cell of grids of 1, 2x2, 4x4... cells, coarse to fine,
+	 * normalized by the highest of the target
+	 */
+	REGIONS("regions"),
+	/**
+	 * the levels of an image pyramid, full resolution first, each scored on its own and the
+	 * scores weighted; normalized by the highest gray level of the target
+	 */
+	PYRAMID("pyramid"),
+	/**
+	 * the image itself, scored by its mean structural similarity with the target over sliding
+	 * windows rather than gray level by gray level
+	 */
+	SSIM("ssim");
+
+	private final String name;
+
+	private Feature(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @param name <code>pixels</code>, <code>gradient</code>, <code>regions</code>,
+	 * <code>pyramid</code> or <code>ssim</code>
+	 * @return the feature named <code>name</code>
+	 * @throws IllegalArgumentException if there is no such feature
+	 */
+	public static Feature get(String name) {
+		for (Feature f : values())
+			if (f.name.equalsIgnoreCase(name.trim()))
+				return f;
+		throw new IllegalArgumentException("unknown feature: " + name);
+	}
+
+	/**
+	 * @param names comma separated feature names
+	 * @return the features named in <code>names</code>, in order, each once
+	 * @throws IllegalArgumentException if a name is unknown, or there are none
+	 */
+	public static Feature[] parse(String names) {
+		List<Feature> features = new ArrayList<Feature>();
+		for (String name : names.split(",")) {
+			if (name.trim().length() == 0) continue;
+			Feature f = get(name);
+			if (!features.contains(f)) features.add(f);
+		}
+		if (features.isEmpty()) throw new IllegalArgumentException("no features in: " + names);
+		return features.toArray(new Feature[features.size()]);
+	}
+
+	/**
+	 * @param target this feature of a target image
+	 * @return the value normalizing this feature, of the target and of the subjects compared
+	 * with it
+	 */
+	public double threshold(GrayscaleImage target) {
+		switch (this) {
+		case GRADIENT: return target.getMax() - target.getMin();
+		default: return target.getMax();
+		}
+	}
+
+	/**
+	 * @see java.lang.Enum#toString()
+	 */
+	public String toString() {
+		return name;
+	}
+}
@@ -0,0 +1,210 @@
+/**
+ * Copyright (C) 2010 Brian Woolley
+ *
+ * This file is part of the octopusArm simulator.
+ *
+ * The octopusArm simulator is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ */
+package edu.ucf.eplex.imageEvolver;
+
+/**
+ * The features of one image, each extracted once and then compared with every target. A
+ * feature set is reused from image to image: <code>extract</code> replaces the features of
+ * the last image, computing them into the images it already holds when the sizes match, so
+ * extracting the features of a whole generation allocates nothing after the first subject.
+ * <p>
+ * The pixel feature is the extracted image itself, not a copy. The region feature is a one
+ * row image of the mean gray level of each grid cell, coarse grids first, read from the
+ * summed-area tables of the image. The pyramid feature is the levels of the image pyramid, end
+ * to end. The SSIM feature is the image itself, its summed-area tables at hand.
+ */
+public class FeatureSet {
+
+	/** default number of region grids: 1, 2x2, 4x4, 8x8 and 16x16 cells */
+	public static final int DEFAULT_REGION_LEVELS = 5;
+
+	/** default number of pyramid levels, counting the image itself */
+	public static final int DEFAULT_PYRAMID_LEVELS = 4;
+
+	private final Feature[] features;
+	private final GradientMagnitude gradientOperator;
+	private final GrayscaleImage[] images = new GrayscaleImage[Feature.values().length];
+	private GrayscaleImage image = null;
+
+	private int regionLevels = DEFAULT_REGION_LEVELS;
+	private final IntegralImage integral = new IntegralImage();
+
+	/** the cells of the region grids of images of the size of <code>image</code> */
+	private Region[] regions = new Region[0];
+
+	private Pyramid pyramid = new Pyramid(Pyramid.Filter.BOX, DEFAULT_PYRAMID_LEVELS);
+
+	/**
+	 * @param features the features to extract
+	 * @param gradientOperator computes the gradient feature
+	 */
+	public FeatureSet(Feature[] features, GradientMagnitude gradientOperator) {
+		this.features = features.clone();
+		this.gradientOperator = gradientOperator;
+	}
+
+	/**
+	 * @return the features extracted, in order
+	 */
+	public Feature[] getFeatures() {
+		return features.clone();
+	}
+
+	/**
+	 * @return number of region grids, from 1 cell to <code>2^(levels - 1)</code> cells a side
+	 */
+	public int getRegionLevels() {
+		return regionLevels;
+	}
+
+	/**
+	 * @param levels number of region grids; grids finer than the image are left out
+	 */
+	public void setRegionLevels(int levels) {
+		if (levels < 1) throw new IllegalArgumentException("region levels must be >= 1");
+		regionLevels = levels;
+		regions = new Region[0];
+	}
+
+	/**
+	 * @return the pyramid the pyramid feature is built in; its levels tell where each level
+	 * of the feature starts
+	 */
+	public Pyramid getPyramid() {
+		return pyramid;
+	}
+
+	/**
+	 * @param filter reducing each pyramid level to the next
+	 * @param levels most pyramid levels, counting the image itself
+	 */
+	public void setPyramid(Pyramid.Filter filter, int levels) {
+		pyramid = new Pyramid(filter, levels);
+	}
+
+	/**
+	 * @return true if <code>feature</code> is among those extracted
+	 */
+	public boolean contains(Feature feature) {
+		for (Feature f : features)
+			if (f == feature) return true;
+		return false;
+	}
+
+	/**
+	 * Extracts each feature of <code>image</code> once, replacing those of the last image.
+	 * @param image
+	 * @return this feature set
+	 */
+	public FeatureSet extract(GrayscaleImage image) {
+		this.image = image;
+		boolean integrated = false;
+		for (Feature f : features) {
+			int i = f.ordinal();
+			switch (f) {
+			case GRADIENT:
+				GrayscaleImage gradient = images[i];
+				if (gradient == null || gradient == image || gradient.getWidth() != image.getWidth()
+						|| gradient.getHeight() != image.getHeight()) {
+					gradient = new GrayscaleImage(image.getWidth(), image.getHeight());
+					images[i] = gradient;
+				}
+				gradientOperator.compute(image, gradient);
+				break;
+			case REGIONS:
+				if (regions.length == 0 || images[i] == null || !fits(image))
+					regions = grid(image.getWidth(), image.getHeight(), regionLevels);
+				if (images[i] == null || images[i].getWidth() != regions.length)
+					images[i] = new GrayscaleImage(regions.length, 1);
+				if (!integrated) integral.compute(image);
+				integrated = true;
+				for (int r = 0; r < regions.length; r++)
+					images[i].set(r, regions[r].getValue(integral));
+				break;
+			case PYRAMID:
+				images[i] = pyramid.build(image);
+				break;
+			case SSIM:
+				if (!integrated) integral.compute(image);
+				integrated = true;
+				images[i] = image;
+				break;
+			default:
+				images[i] = image;
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * @return true if the region grids cover exactly an image of the size of <code>image</code>
+	 */
+	private boolean fits(GrayscaleImage image) {
+		Region whole = regions[0];
+		return whole.getWidth() == image.getWidth() && whole.getHeight() == image.getHeight();
+	}
+
+	/**
+	 * @return the cells of grids of 1, 2x2, 4x4... cells over a <code>width</code> by
+	 * <code>height</code> image, coarse to fine, each in row-major order
+	 */
+	private static Region[] grid(int width, int height, int levels) {
+		int cells = 0;
+		for (int level = 0, n = 1; level < levels && n <= width && n <= height; level++, n *= 2)
+			cells += n * n;
+		Region[] grid = new Region[cells];
+		int r = 0;
+		for (int level = 0, n = 1; level < levels && n <= width && n <= height; level++, n *= 2) {
+			for (int j = 0; j < n; j++) {
+				int y0 = j * height / n, y1 = (j + 1) * height / n;
+				for (int i = 0; i < n; i++) {
+					int x0 = i * width / n, x1 = (i + 1) * width / n;
+					grid[r++] = new Region(x0, y0, x1 - x0, y1 - y0);
+				}
+			}
+		}
+		return grid;
+	}
+
+	/**
+	 * @return the summed-area tables of the image the features were last extracted from, if
+	 * the region or SSIM feature is extracted; valid until the next extraction
+	 */
+	public IntegralImage getIntegral() {
+		return integral;
+	}
+
+	/**
+	 * @return the image the features were last extracted from
+	 */
+	public GrayscaleImage getImage() {
+		return image;
+	}
+
+	/**
+	 * @param feature
+	 * @return <code>feature</code> of the last image, valid until the next extraction
+	 * @throws IllegalStateException if <code>feature</code> is not extracted, or nothing has
+	 * been yet
+	 */
+	public GrayscaleImage get(Feature feature) {
+		if (image == null || !contains(feature))
+			throw new IllegalStateException(feature + " has not been extracted");
+		return images[feature.ordinal()];
+	}
+}
@@ -19,6 +19,10 @@
  */
 package edu.ucf.eplex.imageEvolver;
 
+import java.util.HashMap;
+import java.util.Map;
+
+import com.anji.nn.Precision;
 import com.anji.util.Configurable;
 import com.anji.util.Properties;
 
@@ -36,9 +40,25 @@ public class FuzzyHammingDist implements Configurable {
 	private static final int DEFAULT_MAX_FITNESS = 10000;
 
 	private static final String MAX_FITNESS_KEY = "imageEvolver.fitness.max";
+
+	/**
+	 * fractional bits of the memberships in the lookup tables of
+	 * <code>evaluate(byte[], byte[], double)</code>
+	 */
+	private static final int LOOKUP_SHIFT = 32;
+
+	/**
+	 * most a looked up membership differs from the one the double precision comparison sums
+	 * for the same gray levels: half a fixed-point step of rounding, and 16 ulps for the
+	 * normalized difference being computed from the gray levels instead of their difference
+	 */
+	private static final double LOOKUP_ERROR = Math.pow(2, -(LOOKUP_SHIFT + 1)) + 16 * Math.ulp(1.0);
 	
 	private double alpha = DEFAULT_ALPHA_MODULATION;
 	private int maxFitness = DEFAULT_MAX_FITNESS;
+
+	/** membership of each absolute 8-bit difference, by threshold, for the current alpha */
+	private final Map<Double, long[]> lookups = new HashMap<Double, long[]>();
 	/**
 	 * Compares the difference between two arrays of EQUAL length.  A result of zero (0) indicates that the 
 	 * two sets are the same and a result of one (1) indicates that the two sets are maximally different.
@@ -57,10 +77,11 @@ public class FuzzyHammingDist implements Configurable {
 			System.err.println("Size of source [" + source.length + "] does not match size of target  [" + target.length + "]");
 			return 1;
 		}
-		double[] weight = new double[source.length];
-		for (int i=0; i<source.length; i++) 
-			weight[i] = 1.0;
-		return evaluate(source, target, weight);
+		// uniform weights: the weighted average is the plain average
+		double fitness = 0.0;
+		for (int i=0; i<source.length; i++)
+			fitness += membership(source[i], target[i]);
+		return scale(fitness/source.length);
 	}
 
 	public int evaluate(double[] source, double[] target, double[] weight) {
@@ -77,19 +98,204 @@ public class FuzzyHammingDist implements Configurable {
 		// For implementation purposes, this code implements the maximization function
 		//		d(a,b) = e^ -alpha(a-b)^2
 		// rather than the original minimization function d(a,b) = 1 - e^ -alpha(a-b)^2
-		double err, diff, fitness = 0.0, features = 0;
+		double fitness = 0.0, features = 0;
 		for (int i=0; i<source.length; i++) {
-//			err = Math.pow(source[i] - target[i], 2);
-			err = Math.abs(source[i] - target[i]);
-			err = -alpha * err;
-			diff = Math.pow(Math.E, err);
-			fitness += diff * weight[i];
+			fitness += membership(source[i], target[i]) * weight[i];
 			features += weight[i];
 		}
 		
 		// Calculate the average degree of difference across the difference fuzzy set (Ralescu, 2003)
 		fitness = (double) fitness/features;
 		
+		return scale(fitness);
+	}
+
+	/**
+	 * <code>evaluate(double[], double[])</code> of the gray levels of <code>source</code> divided
+	 * by <code>threshold</code> (or all 0 if <code>threshold</code> is not positive), without
+	 * normalizing them into an array first; the score is the same.
+	 */
+	public int evaluate(GrayscaleImage source, double threshold, double[] target) {
+		byte[] pixels = source.getPixels();
+		if (pixels.length != target.length) {
+			System.err.println("Size of source [" + pixels.length + "] does not match size of target  [" + target.length + "]");
+			return 1;
+		}
+		return bound(accumulate(pixels, threshold, target, 0, pixels.length, 0.0), pixels.length, pixels.length);
+	}
+
+	/**
+	 * Adds the memberships of elements [from, to) of gray levels normalized by
+	 * <code>threshold</code>, as <code>evaluate(GrayscaleImage, double, double[])</code> sums
+	 * them, to <code>sum</code>. Accumulating consecutive ranges in order gives the same sum.
+	 * @return the new sum
+	 */
+	public double accumulate(byte[] source, double threshold, double[] target, int from, int to, double sum) {
+		for (int i=from; i<to; i++)
+			sum += membership((threshold > 0.0) ? (source[i] & 0xFF) / threshold : 0.0, target[i]);
+		return sum;
+	}
+
+	/**
+	 * <code>evaluate(double[], double[])</code> of two 8-bit feature sets, both normalized by
+	 * <code>threshold</code>. There are only 256 absolute differences between gray levels, so
+	 * the membership of each is looked up, in fixed point with <code>LOOKUP_SHIFT</code>
+	 * fractional bits, and the memberships summed exactly in a <code>long</code>. The score is
+	 * that of the double precision comparison of the normalized sets, as
+	 * <code>score(long, byte[], byte[], double, int, int)</code> makes sure.
+	 * @param source gray levels of the subject
+	 * @param target gray levels of the target
+	 * @param threshold normalizing both; if not positive, every gray level normalizes to 0
+	 */
+	public int evaluate(byte[] source, byte[] target, double threshold) {
+		if (source.length != target.length) {
+			System.err.println("Size of source [" + source.length + "] does not match size of target  [" + target.length + "]");
+			return 1;
+		}
+		return score(accumulate(source, target, threshold, 0, source.length), source, target, threshold, 0, source.length);
+	}
+
+	/**
+	 * @return the sum of the memberships of elements [from, to) of two 8-bit feature sets
+	 * normalized by <code>threshold</code>, in the fixed point of
+	 * <code>evaluate(byte[], byte[], double)</code>
+	 */
+	public long accumulate(byte[] source, byte[] target, double threshold, int from, int to) {
+		long[] lookup = lookup(threshold);
+		long sum = 0;
+		for (int i=from; i<to; i++)
+			sum += lookup[Math.abs((source[i] & 0xFF) - (target[i] & 0xFF))];
+		return sum;
+	}
+
+	/**
+	 * Adds the memberships of elements [from, to) of two 8-bit feature sets normalized by
+	 * <code>threshold</code> to <code>sum</code> in double precision, as
+	 * <code>evaluate(double[], double[])</code> sums those of the normalized sets.
+	 * @return the new sum
+	 */
+	private double accumulate(byte[] source, byte[] target, double threshold, int from, int to, double sum) {
+		if (threshold <= 0.0) return sum + (to - from);
+		for (int i=from; i<to; i++)
+			sum += membership((source[i] & 0xFF) / threshold, (target[i] & 0xFF) / threshold);
+		return sum;
+	}
+
+	/**
+	 * The score of elements [from, to) of two 8-bit feature sets normalized by
+	 * <code>threshold</code>, whose fixed-point sum from
+	 * <code>accumulate(byte[], byte[], double, int, int)</code> is <code>sum</code>. The sum
+	 * is within <code>error(int)</code> of the double precision sum, so unless the scores at
+	 * either end of that interval differ, the score of the sum is that of the double precision
+	 * comparison. Otherwise the sum is so close to a rounding step of the score that the
+	 * memberships are summed again in double precision.
+	 */
+	public int score(long sum, byte[] source, byte[] target, double threshold, int from, int to) {
+		int count = to - from;
+		double average = (double) sum / (1L << LOOKUP_SHIFT);
+		double error = error(count);
+		int low = scale((average - error) / count);
+		if (low == scale((average + error) / count)) return low;
+		return bound(accumulate(source, target, threshold, from, to, 0.0), count, count);
+	}
+
+	/**
+	 * @return the most a fixed-point sum of <code>count</code> looked up memberships differs
+	 * from the double precision sum of the same memberships, which rounds each of its additions
+	 */
+	private static double error(int count) {
+		return count * (LOOKUP_ERROR + count * Math.ulp(1.0));
+	}
+
+	/**
+	 * @return the membership of each absolute difference of two gray levels normalized by
+	 * <code>threshold</code>, in fixed point with <code>LOOKUP_SHIFT</code> fractional bits
+	 */
+	private long[] lookup(double threshold) {
+		Double key = new Double(threshold);
+		long[] lookup = lookups.get(key);
+		if (lookup == null) {
+			lookup = new long[256];
+			for (int d = 0; d < lookup.length; d++) {
+				double m = (threshold > 0.0) ? membership(d / threshold, 0.0) : 1.0;
+				lookup[d] = Math.round(m * (1L << LOOKUP_SHIFT));
+			}
+			lookups.put(key, lookup);
+		}
+		return lookup;
+	}
+
+	/**
+	 * <code>evaluate(double[], double[])</code> in single precision: differences, memberships
+	 * and their sum are <code>float</code>.
+	 */
+	public int evaluate(float[] source, float[] target) {
+		if (source.length != target.length) {
+			System.err.println("Size of source [" + source.length + "] does not match size of target  [" + target.length + "]");
+			return 1;
+		}
+		float a = (float) alpha;
+		float fitness = 0.0f;
+		for (int i=0; i<source.length; i++)
+			fitness += (float) Math.exp(-a * Math.abs(source[i] - target[i]));
+		return scale(fitness/source.length);
+	}
+
+	/**
+	 * <code>evaluate(double[], double[])</code> in 16.16 fixed point (see <code>Precision</code>):
+	 * each membership is rounded to fixed point and the sum accumulated exactly in a
+	 * <code>long</code>.
+	 */
+	public int evaluateFixed(int[] source, int[] target) {
+		if (source.length != target.length) {
+			System.err.println("Size of source [" + source.length + "] does not match size of target  [" + target.length + "]");
+			return 1;
+		}
+		long fitness = 0;
+		for (int i=0; i<source.length; i++) {
+			long diff = Math.abs((long) source[i] - target[i]);
+			fitness += Precision.toFixed(Math.exp(-alpha * diff / Precision.FIXED_ONE));
+		}
+		return scale((double) fitness / Precision.FIXED_ONE / source.length);
+	}
+
+	/**
+	 * @return the membership of <code>source</code> in <code>target</code>, in (0, 1], as summed by
+	 * <code>evaluate(double[], double[])</code>
+	 */
+	public double membership(double source, double target) {
+//		err = Math.pow(source - target, 2);
+		return Math.pow(Math.E, -alpha * Math.abs(source - target));
+	}
+
+	/**
+	 * The highest score <code>evaluate(double[], double[])</code> can give sets of
+	 * <code>total</code> elements whose first <code>count</code> memberships sum to
+	 * <code>sum</code>; once <code>count == total</code> it is their score.
+	 * @param sum sum of the memberships of the first <code>count</code> elements, in order
+	 * @param count number of elements compared so far
+	 * @param total number of elements of the sets
+	 * @return the highest possible score
+	 */
+	public int bound(double sum, int count, int total) {
+		return scale((sum + (total - count)) / total);
+	}
+
+	/**
+	 * <code>bound(double, int, int)</code> of a fixed-point sum from
+	 * <code>accumulate(byte[], byte[], double, int, int)</code>, raised by its
+	 * <code>error(int)</code> so it bounds the double precision score too. Once
+	 * <code>count == total</code>, <code>score(long, byte[], byte[], double, int, int)</code>
+	 * gives the score itself.
+	 */
+	public int bound(long sum, int count, int total) {
+		return scale(((double) sum / (1L << LOOKUP_SHIFT) + error(count) + (total - count)) / total);
+	}
+
+	/**
+	 * Squares the average membership and scales it to <code>maxFitness</code>.
+	 */
+	private int scale(double fitness) {
 		// Keep the raw fitness value in the range [0, 1] 
 		fitness = Math.max(0.0, fitness);
 		fitness = Math.min(1.0, fitness);
@@ -111,6 +317,7 @@ public class FuzzyHammingDist implements Configurable {
 	public void init(Properties props) throws Exception {
 		maxFitness = props.getIntProperty( MAX_FITNESS_KEY, DEFAULT_MAX_FITNESS );
 		alpha = props.getDoubleProperty( ALPHA_MOULATION_KEY, DEFAULT_ALPHA_MODULATION );
+		lookups.clear();
 	}
 
 }
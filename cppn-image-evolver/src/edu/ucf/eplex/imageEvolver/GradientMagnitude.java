@@ -0,0 +1,185 @@
+/**
+ * Copyright (C) 2010 Brian Woolley
+ *
+ * This file is part of the octopusArm simulator.
+ *
+ * The octopusArm simulator is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ */
+package edu.ucf.eplex.imageEvolver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gradient magnitude of a grayscale image, as JAI's <code>gradientmagnitude</code> operation
+ * computes it with the Sobel-like kernels
+ * <pre>
+ *   horizontal           vertical
+ *   1     0  -1         -1  -1.414  -1
+ *   1.414 0  -1.414      0   0       0
+ *   1     0  -1          1   1.414   1
+ * </pre>
+ * Each pixel gets <code>sqrt(h * h + v * v)</code>, rounded and clamped to [0, 255].
+ * <p>
+ * JAI leaves out the one pixel frame the kernels do not fit in, unless given a border
+ * extender. Here the edge rows and columns are replicated outward, as
+ * <code>BorderExtender.BORDER_COPY</code> does: interior pixels are those of JAI's result, and
+ * a uniform image has no gradient on its frame either.
+ * <p>
+ * Both kernels are separable, so each row is computed in two passes: the first smooths and
+ * differences the three source rows vertically into two scratch rows, the second differences
+ * and smooths those horizontally. Scratch rows are kept from image to image, so computing a
+ * gradient into an existing image allocates nothing. With more than one thread, bands of rows
+ * are computed in parallel.
+ */
+public class GradientMagnitude {
+
+	/** weight of the center row or column of the kernels */
+	public static final float CENTER_WEIGHT = 1.414f;
+
+	/** creates the daemon threads of the pools, so they never keep the VM alive */
+	private static final ThreadFactory DAEMON_THREADS = new ThreadFactory() {
+		private final AtomicInteger count = new AtomicInteger();
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "GradientMagnitude-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	};
+
+	private int threads = 1;
+	private ExecutorService executor = null;
+
+	/** vertically smoothed and vertically differenced scratch rows of each thread */
+	private float[][] smooth = new float[1][0];
+	private float[][] diff = new float[1][0];
+
+	/**
+	 * @return number of threads computing bands of rows
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * @param threads number of threads computing bands of rows; 1 computes on the calling thread
+	 */
+	public synchronized void setThreads(int threads) {
+		if (threads < 1) throw new IllegalArgumentException("threads must be >= 1");
+		if (threads == this.threads) return;
+		if (executor != null) executor.shutdown();
+		executor = (threads > 1) ? Executors.newFixedThreadPool(threads, DAEMON_THREADS) : null;
+		this.threads = threads;
+		smooth = new float[threads][0];
+		diff = new float[threads][0];
+	}
+
+	/**
+	 * @param image
+	 * @return a new image of the gradient magnitude of <code>image</code>
+	 */
+	public GrayscaleImage compute(GrayscaleImage image) {
+		GrayscaleImage gradient = new GrayscaleImage(image.getWidth(), image.getHeight());
+		compute(image, gradient);
+		return gradient;
+	}
+
+	/**
+	 * Computes the gradient magnitude of <code>image</code> into <code>gradient</code>.
+	 * @param image
+	 * @param gradient an image of the same size, other than <code>image</code>
+	 */
+	public synchronized void compute(GrayscaleImage image, GrayscaleImage gradient) {
+		final int w = image.getWidth();
+		final int h = image.getHeight();
+		if (gradient.getWidth() != w || gradient.getHeight() != h)
+			throw new IllegalArgumentException("gradient must be " + w + "x" + h);
+		if (gradient == image) throw new IllegalArgumentException("gradient can not be computed in place");
+		final byte[] src = image.getPixels();
+		final byte[] dst = gradient.getPixels();
+		int bands = Math.min(threads, h);
+		for (int t = 0; t < bands; t++) {
+			// one column on either side for the replicated edges
+			if (smooth[t].length != w + 2) {
+				smooth[t] = new float[w + 2];
+				diff[t] = new float[w + 2];
+			}
+		}
+		if (executor == null || bands == 1) {
+			computeRows(src, w, h, dst, 0, h, smooth[0], diff[0]);
+			return;
+		}
+
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(bands);
+		for (int t = 0; t < bands; t++) {
+			final int y0 = t * h / bands;
+			final int y1 = (t + 1) * h / bands;
+			final float[] s = smooth[t];
+			final float[] d = diff[t];
+			tasks.add(new Callable<Object>() {
+				public Object call() {
+					computeRows(src, w, h, dst, y0, y1, s, d);
+					return null;
+				}
+			});
+		}
+		try {
+			for (Future<Object> f : executor.invokeAll(tasks))
+				f.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while computing gradient", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+			throw new IllegalStateException("can not compute gradient", e.getCause());
+		}
+	}
+
+	/**
+	 * Computes rows [y0, y1) of the gradient of a <code>w</code> by <code>h</code> image.
+	 * @param smooth scratch row of <code>w + 2</code> entries
+	 * @param diff scratch row of <code>w + 2</code> entries
+	 */
+	private static void computeRows(byte[] src, int w, int h, byte[] dst, int y0, int y1, float[] smooth, float[] diff) {
+		for (int y = y0; y < y1; y++) {
+			int row = y * w;
+			// the rows above and below, the edge rows replicated outward
+			int above = (y == 0) ? row : row - w;
+			int below = (y == h - 1) ? row : row + w;
+			for (int x = 0; x < w; x++) {
+				float a = src[above + x] & 0xFF;
+				float b = src[row + x] & 0xFF;
+				float c = src[below + x] & 0xFF;
+				smooth[x + 1] = a + CENTER_WEIGHT * b + c;
+				diff[x + 1] = c - a;
+			}
+			smooth[0] = smooth[1];
+			diff[0] = diff[1];
+			smooth[w + 1] = smooth[w];
+			diff[w + 1] = diff[w];
+			for (int x = 0; x < w; x++) {
+				float gh = smooth[x] - smooth[x + 2];
+				float gv = diff[x] + CENTER_WEIGHT * diff[x + 1] + diff[x + 2];
+				int m = (int) (Math.sqrt(gh * gh + gv * gv) + 0.5);
+				dst[row + x] = (byte) Math.min(m, 255);
+			}
+		}
+	}
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright (C) 2010 Brian Woolley
+ *
+ * This file is part of the octopusArm simulator.
+ *
+ * The octopusArm simulator is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ */
+package edu.ucf.eplex.imageEvolver;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+/**
+ * An 8-bit grayscale image: one unsigned byte per pixel, in row-major order. This is the
+ * phenotype of a chromosome as rendered by <code>ImageRenderer</code> and compared by the
+ * fitness function; a <code>BufferedImage</code> sharing its pixels is made only for display
+ * or export.
+ */
+public class GrayscaleImage {
+
+	private static final ComponentColorModel GRAY_MODEL = new ComponentColorModel(
+			ColorSpace.getInstance(ColorSpace.CS_GRAY), new int[] { 8 }, false, true,
+			Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+
+	private final int width;
+	private final int height;
+	private final byte[] pixels;
+
+	/**
+	 * Creates a black image.
+	 * @param width image width in pixels
+	 * @param height image height in pixels
+	 */
+	public GrayscaleImage(int width, int height) {
+		this(width, height, new byte[width * height]);
+	}
+
+	/**
+	 * @param width image width in pixels
+	 * @param height image height in pixels
+	 * @param pixels gray level of each pixel, in row-major order; not copied
+	 */
+	public GrayscaleImage(int width, int height, byte[] pixels) {
+		if (width <= 0 || height <= 0) throw new IllegalArgumentException("image must have at least one pixel");
+		if (pixels.length != width * height) throw new IllegalArgumentException("image must have " + width * height + " pixels");
+		this.width = width;
+		this.height = height;
+		this.pixels = pixels;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return the gray level of each pixel, in row-major order; the image itself, not a copy
+	 */
+	public byte[] getPixels() {
+		return pixels;
+	}
+
+	/**
+	 * @param p pixel index, <code>y * width + x</code>
+	 * @return gray level of the pixel, in [0, 255]
+	 */
+	public int get(int p) {
+		return pixels[p] & 0xFF;
+	}
+
+	/**
+	 * @param x pixel column
+	 * @param y pixel row
+	 * @return gray level of the pixel, in [0, 255]
+	 */
+	public int get(int x, int y) {
+		return pixels[y * width + x] & 0xFF;
+	}
+
+	/**
+	 * @param p pixel index, <code>y * width + x</code>
+	 * @param gray gray level in [0, 255]
+	 */
+	public void set(int p, int gray) {
+		pixels[p] = (byte) gray;
+	}
+
+	/**
+	 * @return the highest gray level of the image
+	 */
+	public int getMax() {
+		int max = 0;
+		for (byte b : pixels)
+			max = Math.max(max, b & 0xFF);
+		return max;
+	}
+
+	/**
+	 * @return the lowest gray level of the image
+	 */
+	public int getMin() {
+		int min = 255;
+		for (byte b : pixels)
+			min = Math.min(min, b & 0xFF);
+		return min;
+	}
+
+	/**
+	 * @return a <code>BufferedImage</code> of one 8-bit gray band backed by the pixels of this
+	 * image, so later changes to either show in both
+	 */
+	public BufferedImage toBufferedImage() {
+		DataBufferByte buffer = new DataBufferByte(pixels, pixels.length);
+		WritableRaster raster = Raster.createInterleavedRaster(buffer, width, height, width, 1, new int[] { 0 }, null);
+		return new BufferedImage(GRAY_MODEL, raster, false, null);
+	}
+
+	/**
+	 * @param image an image with a single band, such as one from <code>toBufferedImage()</code>
+	 * @return the first band of <code>image</code>, clamped to [0, 255]
+	 */
+	public static GrayscaleImage fromRaster(Raster image) {
+		int w = image.getWidth();
+		int h = image.getHeight();
+		int[] samples = image.getSamples(image.getMinX(), image.getMinY(), w, h, 0, (int[]) null);
+		byte[] pixels = new byte[w * h];
+		for (int p = 0; p < pixels.length; p++)
+			pixels[p] = (byte) Math.max(0, Math.min(255, samples[p]));
+		return new GrayscaleImage(w, h, pixels);
+	}
+
+	public boolean equals(Object o) {
+		if (!(o instanceof GrayscaleImage)) return false;
+		GrayscaleImage other = (GrayscaleImage) o;
+		return width == other.width && height == other.height && Arrays.equals(pixels, other.pixels);
+	}
+
+	public int hashCode() {
+		return Arrays.hashCode(pixels) * 31 + width;
+	}
+
+	public String toString() {
+		return width + "x" + height + " grayscale image";
+	}
+}
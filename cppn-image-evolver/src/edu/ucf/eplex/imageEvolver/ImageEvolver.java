@@ -24,20 +24,29 @@ import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.util.LinkedList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 
-import javax.media.jai.JAI;
-import javax.media.jai.KernelJAI;
-import javax.media.jai.PlanarImage;
-import javax.media.jai.RenderedImageAdapter;
-
+import org.apache.log4j.Logger;
 import org.jgap.BulkFitnessFunction;
 import org.jgap.Chromosome;
+import org.jgap.ChromosomeFitnessComparator;
 import org.jgap.Configuration;
+import org.jgap.Specie;
 
 import com.anji.Copyright;
+import com.anji.activationFunction.ActivationApproximation;
 import com.anji.neat.Evolver;
+import com.anji.neat.NeatConfiguration;
+import com.anji.nn.NetOptimizer;
+import com.anji.nn.Precision;
 import com.anji.persistence.Persistence;
 import com.anji.util.ArgumentParser;
 import com.anji.util.Configurable;
@@ -45,12 +54,8 @@ import com.anji.util.DummyConfiguration;
 import com.anji.util.Properties;
 
 import edu.ucf.eplex.imageEvolver.gui.EvolutionViewer;
-import edu.ucf.eplex.picbreeder.DefaultIndividual;
 import edu.ucf.eplex.picbreeder.DefaultParameters;
-import edu.ucf.eplex.picbreeder.ImagePhenotype;
 import edu.ucf.eplex.picbreeder.ParameterTableInstance;
-import edu.ucf.eplex.picbreeder.renderers.RenderingAlgorithm;
-import edu.ucf.eplex.picbreeder.renderers.algorithms.DefaultRenderer;
 
 /**
  * @author Brian Woolley on Jul 7, 2010
@@ -65,20 +70,86 @@ public class ImageEvolver implements BulkFitnessFunction, Configurable {
 	private static final double DEFAULT_GRADIENT_SENSITIVITY = 16;
 
 	private static final double DEFAULT_GRAYSCALE_SENSITIVITY = 256;
+
+	private static final double DEFAULT_SCREEN_FRACTION = 0.25;
 	
+	private static final String BOUND_KEY = "imageEvolver.bound";
+
+	private static final String BOUND_CUTOFF_KEY = "imageEvolver.bound.cutoff";
+
 	private static final String DEFAULT_TARGET_IMAGE = "94";
 
-	private static final String EVALUATE_GRADIENT_KEY = "imageEvolver.graident.evaluate";
+	private static final String EVALUATE_GRADIENT_KEY = "imageEvolver.gradient.evaluate";
 
 	private static final String EVALUATE_GRAYSCALE_KEY = "imageEvolver.grayscale.evaluate";
+
+	private static final String EVALUATE_SSIM_KEY = "imageEvolver.ssim.evaluate";
+
+	private static final String FEATURES_KEY = "imageEvolver.features";
+
+	/** pixels of a subject compared with every target still open before their bounds are checked */
+	private static final int FUSED_BLOCK_PIXELS = 1024;
 	
 	private static final String GRADIENT_SENSITIVITY_KEY = "imageEvolver.gradient.threshold";
+
+	private static final String GRADIENT_THREADS_KEY = "imageEvolver.gradient.threads";
 	
 	private static final String GRAYSCALE_SENSITIVITY_KEY = "imageEvolver.grayscale.threshold";
 
+	private static final String HEIGHT_KEY = "imageEvolver.height";
+
+	/** misspelled key of older property files, read when <code>EVALUATE_GRADIENT_KEY</code> is absent */
+	private static final String LEGACY_EVALUATE_GRADIENT_KEY = "imageEvolver.graident.evaluate";
+
+	private static final String PRECISION_KEY = "imageEvolver.precision";
+
+	private static final String PYRAMID_FILTER_KEY = "imageEvolver.pyramid.filter";
+
+	private static final String PYRAMID_WEIGHTS_KEY = "imageEvolver.pyramid.weights";
+
+	private static final String REGION_LEVELS_KEY = "imageEvolver.regions.levels";
+
+	private static final String RENDER_ADAPTIVE_KEY = "imageEvolver.render.adaptive";
+
+	private static final String RENDER_CACHE_KEY = "imageEvolver.render.cache.bytes";
+
+	private static final String RENDER_LOCKSTEP_KEY = "imageEvolver.render.lockstep";
+
+	private static final String RENDER_GENERATE_KEY = "imageEvolver.render.generate.threshold";
+
+	private static final String RENDER_KERNELS_KEY = "imageEvolver.render.kernels";
+
+	private static final String RENDER_MODE_KEY = "imageEvolver.render.mode";
+
+	private static final String RENDER_OPTIMIZE_KEY = "imageEvolver.render.optimize";
+
+	private static final String RENDER_OPTIMIZE_MERGE_KEY = "imageEvolver.render.optimize.merge";
+
+	private static final String RENDER_OPTIMIZE_THRESHOLD_KEY = "imageEvolver.render.optimize.weight.threshold";
+
+	private static final String RENDER_SEPARABLE_KEY = "imageEvolver.render.separable";
+
+	private static final String RENDER_THREADS_KEY = "imageEvolver.render.threads";
+
+	private static final String SAMPLE_ELITES_KEY = "imageEvolver.sample.elites";
+
+	private static final String SAMPLE_SEED_KEY = "imageEvolver.sample.seed";
+
+	private static final String SAMPLE_SIZE_KEY = "imageEvolver.sample.size";
+
+	private static final String SCREEN_FRACTION_KEY = "imageEvolver.screen.fraction";
+
+	private static final String SCREEN_HEIGHT_KEY = "imageEvolver.screen.height";
+
+	private static final String SCREEN_WIDTH_KEY = "imageEvolver.screen.width";
+
+	private static final String SSIM_WINDOW_KEY = "imageEvolver.ssim.window";
+
 	private static final long serialVersionUID = -3836536035901867803L;
 	
 	private static final String TARGET_IMAGE_KEY = "imageEvolver.target";
+
+	private static final String WIDTH_KEY = "imageEvolver.width";
 		
 	static int width = 128;
 
@@ -86,25 +157,85 @@ public class ImageEvolver implements BulkFitnessFunction, Configurable {
 	
 	private static boolean visable = false;
 
-	private static BufferedImage getImageFromArray(int[] pixels, int width, int height) {
-        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-        image.setRGB(0,	0, width, height, pixels, 0, width);
-        return image;
-    }
-	
+	private static ImageRenderer renderer = null;
+
+	private static String renderMode = ImageRenderer.MODE_PLANE;
+
+	private static boolean renderKernels = true;
+
+	private static int renderGenerateThreshold = 0;
+
+	private static boolean renderSeparable = true;
+
+	private static boolean renderAdaptive = false;
+
+	private static int renderThreads = 1;
+
+	private static ActivationApproximation approximation = ActivationApproximation.EXACT;
+
+	private static Precision precision = Precision.DOUBLE;
+
+	private static NetOptimizer optimizer = new NetOptimizer();
+
+	private static PlaneCache planeCache = null;
+
+	private static boolean renderLockstep = true;
+
+	private static ImageRenderer screenRenderer = null;
+
+	private static int screenWidth = 0;
+
+	private static int screenHeight = 0;
+
+	private static Logger logger = Logger.getLogger( ImageEvolver.class );
+
 	public static BufferedImage loadGreyscaleImage(Chromosome ch) {
-		return getImageFromArray(set24bitGreyscale(loadImageArray(ch)), width, height);
+		return loadImage(ch).toBufferedImage();
 	}
 	
-	private static int[] loadImageArray(Chromosome ch) {
-		DefaultIndividual target = new DefaultIndividual(ch);
-		
-		RenderingAlgorithm alg = new DefaultRenderer();
-		alg.render(target);
+	private static GrayscaleImage loadImage(Chromosome ch) {
+		return getRenderer().render(ch);
+	}
+
+	/**
+	 * @return the shared renderer, configured by the current properties
+	 */
+	private static ImageRenderer getRenderer() {
+		ImageRenderer r = renderer;
+		if (r == null || r.getWidth() != width || r.getHeight() != height || !r.getMode().equals(renderMode)) {
+			r = new ImageRenderer(width, height, renderMode);
+			renderer = r;
+		}
+		configure(r);
+		r.setThreads(renderThreads);
+		r.setPlaneCache(planeCache);
+		return r;
+	}
 
-		int[] image = ((ImagePhenotype) target.getDominantPhenotype()).getPixelArray();
+	/**
+	 * @return the renderer of screening images, configured by the current properties
+	 */
+	private static ImageRenderer getScreenRenderer() {
+		ImageRenderer r = screenRenderer;
+		if (r == null || r.getWidth() != screenWidth || r.getHeight() != screenHeight || !r.getMode().equals(renderMode)) {
+			r = new ImageRenderer(screenWidth, screenHeight, renderMode);
+			screenRenderer = r;
+		}
+		configure(r);
+		return r;
+	}
 
-		return image;
+	/**
+	 * Applies the rendering properties shared by every resolution to <code>r</code>.
+	 */
+	private static void configure(ImageRenderer r) {
+		r.setPlaneKernels(renderKernels);
+		r.setGenerateThreshold(renderGenerateThreshold);
+		r.setOptimizer(optimizer);
+		r.setSeparable(renderSeparable);
+		r.setAdaptive(renderAdaptive);
+		r.setApproximation(approximation);
+		r.setPrecision(precision);
 	}
 	
 	public static void main( String[] args ) {
@@ -137,106 +268,601 @@ public class ImageEvolver implements BulkFitnessFunction, Configurable {
 		
 	}
 
-	private static int[] set24bitGreyscale(int[] image) {
-		int[] out = new int[image.length];
-		for (int i = 0; i < image.length; i++) {
-//			if (image[i] >= 0)
-				out[i] = (int) (0xFF << 24) | ((image[i] & 0xFF) << 16) | ((image[i] & 0xFF) << 8) | (image[i] & 0xFF);
-//			else
-//				out[i] = (int) (0xFF << 24) | ((Math.abs(image[i]) & 0xFF) << 16);
-		}
-		return out;
-	}
-	
 	Chromosome champ = null;
 
 	private Collection<EvolutionObserver> champObservers = new ArrayList<EvolutionObserver>();
-	private boolean evaluateGradient = DEFAULT_EVALUATE_GRADIENT;
-	
-    private boolean evaluateGrayscale = DEFAULT_EVALUATE_GRAYSCALE;
+	private Feature[] features = { Feature.PIXELS, Feature.GRADIENT };
 
 	private final FuzzyHammingDist ff = new FuzzyHammingDist();
-	
-	private double gradientThreshold = DEFAULT_GRADIENT_SENSITIVITY;
-	private double grayValue = DEFAULT_GRAYSCALE_SENSITIVITY;
 
-	private List<int[]> targetFeatureSets_Pixels = new ArrayList<int[]>();
-	private List<int[]> targetFeatureSets_Gradient = new ArrayList<int[]>();
+	private final GradientMagnitude gradientOperator = new GradientMagnitude();
 
-	private List<double[]> normalizedTargetFeatureSets_Pixels = new ArrayList<double[]>();
-	private List<double[]> normalizedTargetFeatureSets_Gradient = new ArrayList<double[]>();
+	/** the features of the subject being evaluated, reused from subject to subject */
+	private FeatureSet subjectFeatures = new FeatureSet(features, gradientOperator);
+
+	private int regionLevels = FeatureSet.DEFAULT_REGION_LEVELS;
+
+	/** weight of the score of each pyramid level, full resolution first */
+	private double[] pyramidWeights = { 1, 1, 1, 1 };
+	private Pyramid.Filter pyramidFilter = Pyramid.Filter.BOX;
+
+	private StructuralSimilarity ssim = new StructuralSimilarity(StructuralSimilarity.DEFAULT_WINDOW);
+
+	private List<GrayscaleImage> targetFeatureSets_Pixels = new ArrayList<GrayscaleImage>();
+
+	/**
+	 * A feature of a target: its gray levels, the threshold normalizing them, the normalized
+	 * values, and for the SSIM feature their summed-area tables.
+	 */
+	private static class TargetFeature {
+		final GrayscaleImage image;
+		final double threshold;
+		final double[] normalized;
+		final IntegralImage integral;
+
+		TargetFeature(GrayscaleImage image, double threshold, double[] normalized) {
+			this(image, threshold, normalized, null);
+		}
+
+		TargetFeature(GrayscaleImage image, double threshold, double[] normalized, IntegralImage integral) {
+			this.image = image;
+			this.threshold = threshold;
+			this.normalized = normalized;
+			this.integral = integral;
+		}
+	}
+
+	/**
+	 * each feature of each target, indexed by <code>Feature.ordinal()</code>, and the
+	 * thresholds normalizing each feature of the subjects
+	 */
+	private List<TargetFeature[]> targetFeatureSets = new ArrayList<TargetFeature[]>();
+	private double[] thresholds = new double[Feature.values().length];
+
+	private List<TargetFeature[]> screenFeatureSets = new ArrayList<TargetFeature[]>();
+	private double[] screenThresholds = new double[Feature.values().length];
+
+	private double screenFraction = DEFAULT_SCREEN_FRACTION;
+
+	private int sampleSize = 0;
+	private int sampleElites = 0;
+	private long sampleSeed = 0;
+	private int generation = 0;
+
+	private boolean bound = false;
+	private int boundCutoff = -1;
+	private float survivalRate = NeatConfiguration.DEFAULT_SURVIVAL_RATE;
+	private int survivalCutoff = 0;
+	/** IDs of the chromosomes whose fitness in the last generation is an upper bound */
+	private Set<Long> bounded = new HashSet<Long>();
+
+	/** index of the target each chromosome matched best when last scored, by chromosome ID */
+	private Map<Long, Integer> matches = new HashMap<Long, Integer>();
+
+	/** IDs of the chromosomes evaluated in the last generation */
+	private Set<Long> lastGeneration = new HashSet<Long>();
 	
 	private int targetCount = 0;
 	
 	private String targetImageFile = DEFAULT_TARGET_IMAGE;
 
-	private int[] computeFeatureSet_Gradient(int[] imageFeatures) {
-		return computeGradientFeatures(getImageFromArray(set24bitGreyscale(imageFeatures), width, height));
+	public void evaluate(Chromosome subject) {
+		evaluate(subject, loadImage(subject));
 	}
-	
-	private int[] computeGradientFeatures(BufferedImage anImage) {
-		return set8bitGrayscale(computeGradientImage(anImage).getRGB(0, 0, anImage.getWidth(), anImage.getHeight(), null, 0, anImage.getWidth()));
+
+	/**
+	 * Sets the fitness of <code>subject</code> from its rendered image.
+	 */
+	private void evaluate(Chromosome subject, GrayscaleImage subjectImage) {
+		subject.setFitnessValue(fitness(subject, subjectFeatures.extract(subjectImage), targetFeatureSets, thresholds));
 	}
 
-	private BufferedImage computeGradientImage(BufferedImage anImage) {
-		PlanarImage img = new RenderedImageAdapter(anImage);
-		
-		// Create the kernel filter
-	     float data_h[] = new float[] { 1.0F,   0.0F,   -1.0F,
-	    		 						1.414F, 0.0F,   -1.414F,
-	    		 						1.0F,   0.0F,   -1.0F};
-	     float data_v[] = new float[] {-1.0F,  -1.414F, -1.0F,
-                 						0.0F,   0.0F,    0.0F,
-                 						1.0F,   1.414F,  1.0F};
-
-	     KernelJAI kern_h = new KernelJAI(3,3,data_h);
-	     KernelJAI kern_v = new KernelJAI(3,3,data_v);
-	     
-	     // Create the Gradient operation.
-	     PlanarImage gradient = (PlanarImage)JAI.create("gradientmagnitude", img, kern_h, kern_v);
-	     
-	     return gradient.getAsBufferedImage();
+	/**
+	 * @param subject a chromosome, whose lineage decides which target is scored first
+	 * @param features features of its image
+	 * @param targets features of each target, of the same size
+	 * @param thresholds normalizing each feature of <code>subject</code>
+	 * @return fitness of the image against the best matching of the targets
+	 */
+	private int fitness(Chromosome subject, FeatureSet features, List<TargetFeature[]> targets, double[] thresholds) {
+		return fitness(subject, features, targets, thresholds, null);
 	}
 
-	public void evaluate(Chromosome subject) {
-		int [] subjectPixelSet;
-		double [] normalizedSubjectPixelSet;
-		double [] normalizedSubjectGradientSet;
-
-		subjectPixelSet = loadImageArray(subject);
-		normalizedSubjectPixelSet = normalize(subjectPixelSet, grayValue);
-		subject.setFitnessValue(0);
-		for(int i = 0; i < targetCount; i++){
-			int fitness = 0, count = 0;
-			double[] pixels = normalizedTargetFeatureSets_Pixels.get(i);
-			double[] gradient = normalizedTargetFeatureSets_Pixels.get(i);
-			if (evaluateGrayscale) {
-				fitness += ff.evaluate(normalizedSubjectPixelSet, pixels);
-				count++;
+	/**
+	 * Scores the target the lineage of <code>subject</code> matched best last first. In double
+	 * precision the other targets are then scored together, block of pixels by block of
+	 * pixels, so each block of the subject is read once for all of them, and a target is
+	 * dropped as soon as the highest fitness it can still reach is no better than the best so
+	 * far. The result is that of scoring every target.
+	 * @param pixelScores pixel score against each target, or null to compare the pixels
+	 */
+	private int fitness(Chromosome subject, FeatureSet features, List<TargetFeature[]> targets, double[] thresholds, int[] pixelScores) {
+		Integer match = matches.get(subject.getId());
+		if (match == null && subject.getPrimaryParentId() != null) match = matches.get(subject.getPrimaryParentId());
+		int first = (match == null || match.intValue() >= targetCount) ? 0 : match.intValue();
+
+		int total = features.getImage().getPixels().length;
+		int kinds = Feature.values().length;
+		long[] fixedSums = new long[targetCount * kinds];
+		double[] sums = new double[targetCount * kinds];
+		accumulate(features, targets.get(first), thresholds, pixelScores, 0, total, total, fixedSums, sums, first * kinds);
+		int best = score(features, targets.get(first), thresholds, pixelScores, first, total, total, fixedSums, sums);
+
+		int[] open = new int[targetCount - 1];
+		int count = 0;
+		for (int i = 0; i < targetCount; i++) {
+			if (i != first) open[count++] = i;
+		}
+		int block = (precision == Precision.DOUBLE) ? FUSED_BLOCK_PIXELS : total;
+		for (int from = 0; from < total && count > 0; from += block) {
+			int to = Math.min(total, from + block);
+			int kept = 0;
+			for (int k = 0; k < count; k++) {
+				int i = open[k];
+				accumulate(features, targets.get(i), thresholds, pixelScores, from, to, total, fixedSums, sums, i * kinds);
+				if (score(features, targets.get(i), thresholds, pixelScores, i, to, total, fixedSums, sums) > best)
+					open[kept++] = i;
+			}
+			count = kept;
+		}
+		// the targets left are scored exactly, and beat the first
+		for (int k = 0; k < count; k++) {
+			int fitness = score(features, targets.get(open[k]), thresholds, pixelScores, open[k], total, total, fixedSums, sums);
+			if (best < fitness) {
+				best = fitness;
+				first = open[k];
+			}
+		}
+		matches.put(subject.getId(), new Integer(first));
+		return best;
+	}
+
+	/**
+	 * Adds the memberships of pixels [from, to) of <code>total</code> of each feature in
+	 * <code>features</code> to those of <code>target</code>, in <code>fixedSums</code> where
+	 * both are 8-bit and normalized alike, in <code>sums</code> otherwise, from index
+	 * <code>offset</code>. A feature of fewer elements than pixels accumulates the same
+	 * fraction of its elements. Other precisions compare all the elements at once, and keep the
+	 * score in <code>fixedSums</code>, as the pyramid and SSIM features always do once the last
+	 * pixels are accumulated.
+	 */
+	private void accumulate(FeatureSet features, TargetFeature[] target, double[] thresholds, int[] pixelScores,
+			int from, int to, int total, long[] fixedSums, double[] sums, int offset) {
+		for (Feature f : this.features) {
+			if (f == Feature.PIXELS && pixelScores != null) continue;
+			int o = f.ordinal();
+			byte[] source = features.get(f).getPixels();
+			int first = elements(from, total, source.length);
+			int last = elements(to, total, source.length);
+			if (f == Feature.PYRAMID || f == Feature.SSIM) {
+				// pyramid levels are scored apart, and SSIM over windows, so both are scored whole
+				// with the last block, if the target is still open by then
+				if (to == total) fixedSums[offset + o] = (f == Feature.PYRAMID)
+						? compare(features.getPyramid(), thresholds[o], target[o])
+						: compare(features.get(f), features.getIntegral(), target[o]);
 			}
-			if (evaluateGradient) {
-				normalizedSubjectGradientSet = normalize(computeFeatureSet_Gradient(subjectPixelSet), gradientThreshold);
-				fitness += ff.evaluate(normalizedSubjectGradientSet, gradient);
-				count++;
+			else if (precision != Precision.DOUBLE) fixedSums[offset + o] = compare(features.get(f), thresholds[o], target[o]);
+			else if (thresholds[o] == target[o].threshold)
+				fixedSums[offset + o] += ff.accumulate(source, target[o].image.getPixels(), thresholds[o], first, last);
+			else sums[offset + o] = ff.accumulate(source, thresholds[o], target[o].normalized, first, last, sums[offset + o]);
+		}
+	}
+
+	/**
+	 * @return the highest fitness of <code>features</code> against target <code>i</code> once
+	 * <code>count</code> of <code>total</code> pixels are accumulated; once they all are, the
+	 * fitness
+	 */
+	private int score(FeatureSet features, TargetFeature[] target, double[] thresholds, int[] pixelScores, int i,
+			int count, int total, long[] fixedSums, double[] sums) {
+		int offset = i * Feature.values().length;
+		int fitness = 0;
+		for (Feature f : this.features) {
+			int o = f.ordinal();
+			int length = target[o].image.getPixels().length;
+			int done = elements(count, total, length);
+			if (f == Feature.PIXELS && pixelScores != null) fitness += pixelScores[i];
+			else if (f == Feature.PYRAMID || f == Feature.SSIM) fitness += (count == total) ? (int) fixedSums[offset + o] : ff.getMaxFitness();
+			else if (precision != Precision.DOUBLE) fitness += (int) fixedSums[offset + o];
+			else if (thresholds[o] != target[o].threshold) fitness += ff.bound(sums[offset + o], done, length);
+			else if (done < length) fitness += ff.bound(fixedSums[offset + o], done, length);
+			else fitness += ff.score(fixedSums[offset + o], features.get(f).getPixels(), target[o].image.getPixels(), thresholds[o], 0, length);
+		}
+		return fitness / this.features.length;
+	}
+
+	/**
+	 * @return the elements of a feature of <code>length</code> elements that go with the first
+	 * <code>pixels</code> of <code>total</code>
+	 */
+	private static int elements(int pixels, int total, int length) {
+		return (length == total) ? pixels : (int) ((long) pixels * length / total);
+	}
+
+	/**
+	 * Renders <code>subject</code> row block by row block, accumulating its pixel score
+	 * against each target, and gives up once the highest fitness it can still reach is below
+	 * <code>cutoff</code>. A subject given up on gets that bound as its fitness and is
+	 * <code>bounded</code>; the others get their exact fitness.
+	 * @param subject
+	 * @param cutoff
+	 * @return true if <code>subject</code> got its exact fitness
+	 */
+	private boolean evaluate(Chromosome subject, final int cutoff) {
+		final int total = width * height;
+		final long[] fixedSums = new long[targetCount];
+		final double[] sums = new double[targetCount];
+		final int[] upper = new int[1];
+		final int others = features.length - 1;
+		final double grayValue = thresholds[Feature.PIXELS.ordinal()];
+		GrayscaleImage subjectImage = new GrayscaleImage(width, height);
+		boolean complete = getRenderer().render(subject, subjectImage, new ImageRenderer.BlockListener() {
+			public boolean rendered(GrayscaleImage image, int offset, int length) {
+				byte[] pixels = image.getPixels();
+				int end = offset + length;
+				upper[0] = 0;
+				for (int i = 0; i < targetCount; i++) {
+					TargetFeature target = targetFeatureSets.get(i)[Feature.PIXELS.ordinal()];
+					int fitness;
+					if (grayValue == target.threshold) {
+						fixedSums[i] += ff.accumulate(pixels, target.image.getPixels(), grayValue, offset, end);
+						fitness = ff.bound(fixedSums[i], end, total);
+					}
+					else {
+						sums[i] = ff.accumulate(pixels, grayValue, target.normalized, offset, end, sums[i]);
+						fitness = ff.bound(sums[i], end, total);
+					}
+					// the other features may still match perfectly
+					fitness += others * ff.getMaxFitness();
+					upper[0] = Math.max(upper[0], fitness / features.length);
+				}
+				return upper[0] >= cutoff;
 			}
-			if(subject.getFitnessValue() < fitness / count)
-				subject.setFitnessValue(fitness/count);
+		});
+		if (!complete) {
+			subject.setFitnessValue(upper[0]);
+			bounded.add(subject.getId());
+			return false;
 		}
+		int[] scores = new int[targetCount];
+		for (int i = 0; i < targetCount; i++) {
+			TargetFeature target = targetFeatureSets.get(i)[Feature.PIXELS.ordinal()];
+			if (grayValue == target.threshold)
+				scores[i] = ff.score(fixedSums[i], subjectImage.getPixels(), target.image.getPixels(), grayValue, 0, total);
+			else
+				scores[i] = ff.bound(sums[i], total, total);
+		}
+		subject.setFitnessValue(fitness(subject, subjectFeatures.extract(subjectImage), targetFeatureSets, thresholds, scores));
+		return true;
+	}
+
+	/**
+	 * @param subject
+	 * @return true if the evaluation of <code>subject</code> in the last generation was given
+	 * up on, and its fitness is an upper bound
+	 */
+	public boolean isBounded(Chromosome subject) {
+		return bounded.contains(subject.getId());
 	}
+
+	/**
+	 * Compares <code>source</code>, normalized by <code>threshold</code>, with a target feature
+	 * with <code>ff</code> in the configured precision. In double precision, a target normalized
+	 * by the same threshold is compared gray level to gray level.
+	 */
+	private int compare(GrayscaleImage source, double threshold, TargetFeature target) {
+		return compare(source.getPixels(), threshold, target, 0, source.getPixels().length);
+	}
+
+	/**
+	 * <code>compare(GrayscaleImage, double, TargetFeature)</code> of elements [from, from +
+	 * length) of <code>source</code> and of the target feature.
+	 */
+	private int compare(byte[] source, double threshold, TargetFeature target, int from, int length) {
+		switch (precision) {
+		case FLOAT: return ff.evaluate(Precision.toFloat(normalize(source, threshold, from, length)), Precision.toFloat(slice(target.normalized, from, length)));
+		case FIXED: return ff.evaluateFixed(Precision.toFixed(normalize(source, threshold, from, length)), Precision.toFixed(slice(target.normalized, from, length)));
+		default:
+			if (threshold == target.threshold)
+				return ff.score(ff.accumulate(source, target.image.getPixels(), threshold, from, from + length),
+						source, target.image.getPixels(), threshold, from, from + length);
+			return ff.bound(ff.accumulate(source, threshold, target.normalized, from, from + length, 0.0), length, length);
+		}
+	}
+
+	/**
+	 * @param source the SSIM feature of a subject
+	 * @param integral its summed-area tables
+	 * @return the mean structural similarity of <code>source</code> and the target feature,
+	 * negative similarities counting as 0, scaled to the highest fitness of <code>ff</code>
+	 */
+	private int compare(GrayscaleImage source, IntegralImage integral, TargetFeature target) {
+		double similarity = ssim.compute(source, integral, target.image, target.integral);
+		return (int) Math.round(Math.max(0.0, Math.min(1.0, similarity)) * ff.getMaxFitness());
+	}
+
+	/**
+	 * Scores each level of the pyramid feature built in <code>pyramid</code> against the same
+	 * level of a target's, and weighs the scores by <code>pyramidWeights</code>. Levels the
+	 * images are too small for are left out.
+	 */
+	private int compare(Pyramid pyramid, double threshold, TargetFeature target) {
+		byte[] source = pyramid.getImage().getPixels();
+		double fitness = 0.0, weights = 0.0;
+		for (int l = 0; l < pyramid.getLevels() && l < pyramidWeights.length; l++) {
+			double weight = pyramidWeights[l];
+			if (weight == 0.0) continue;
+			fitness += weight * compare(source, threshold, target, pyramid.getOffset(l), pyramid.getSize(l));
+			weights += weight;
+		}
+		return (weights > 0.0) ? (int) Math.round(fitness / weights) : 0;
+	}
+
 	/**
 	 * @see org.jgap.BulkFitnessFunction#evaluate(java.util.List)
 	 */
 	public void evaluate(List<Chromosome> subjects) {
+		bounded.clear();
+		Set<Long> parents = new HashSet<Long>();
+		for (Chromosome c : subjects) {
+			if (c.getPrimaryParentId() != null) parents.add(c.getPrimaryParentId());
+			if (c.getSecondaryParentId() != null) parents.add(c.getSecondaryParentId());
+		}
+		// the survivors of the last generation, whether or not they were picked as parents
+		Set<Long> survivors = new HashSet<Long>();
+		for (Chromosome c : subjects) {
+			if (lastGeneration.contains(c.getId())) survivors.add(c.getId());
+		}
+		List<Chromosome> order = subjects;
+		if (screenWidth > 0) order = screen(order, survivors);
+		if (sampleSize > 0) order = sample(order);
+		// the survivors, and the elites and champion sampling promoted, are never bounded
+		Set<Long> exact = new HashSet<Long>(survivors);
+		if (sampleSize > 0) {
+			for (Chromosome c : order)
+				exact.add(c.getId());
+		}
+		if (planeCache != null) {
+			// render the parents first, so their offspring find their planes
+			planeCache.retain(parents);
+			List<Chromosome> promoted = order;
+			order = new ArrayList<Chromosome>(promoted.size());
+			for (Chromosome c : promoted) {
+				if (parents.contains(c.getId())) order.add(c);
+			}
+			for (Chromosome c : promoted) {
+				if (!parents.contains(c.getId())) order.add(c);
+			}
+		}
+		// branch and bound accumulates the double precision pixel score as rows render
+		boolean bounding = bound && precision == Precision.DOUBLE && subjectFeatures.contains(Feature.PIXELS);
+		List<GrayscaleImage> images = (renderLockstep && !bounding) ? getRenderer().render(order) : null;
+		int worst = Integer.MAX_VALUE;
+		if (bounding) {
+			// evaluate the never bounded first, so the worst survivor of each species is exact
+			int cutoff = (boundCutoff >= 0) ? boundCutoff : survivalCutoff;
+			Map<Specie, Integer> worstSurvivor = new HashMap<Specie, Integer>();
+			List<Chromosome> rest = new ArrayList<Chromosome>();
+			for (Chromosome c : order) {
+				if (!exact.contains(c.getId())) {
+					rest.add(c);
+					continue;
+				}
+				evaluate(c);
+				worst = Math.min(worst, c.getFitnessValue());
+				if (survivors.contains(c.getId()) && c.getSpecie() != null) {
+					Integer w = worstSurvivor.get(c.getSpecie());
+					if (w == null || c.getFitnessValue() < w.intValue())
+						worstSurvivor.put(c.getSpecie(), new Integer(c.getFitnessValue()));
+				}
+			}
+			for (Chromosome c : rest) {
+				// a chromosome of a species without survivors could be its champion
+				Integer w = (c.getSpecie() == null) ? null : worstSurvivor.get(c.getSpecie());
+				if (w == null) evaluate(c);
+				else if (!evaluate(c, Math.min(cutoff, w.intValue()))) continue;
+				worst = Math.min(worst, c.getFitnessValue());
+			}
+			logger.info( "bounded " + bounded.size() + " of " + order.size() + " below " + cutoff
+					+ " or their species' worst survivor" );
+		}
+		else {
+			for (int i = 0; i < order.size(); i++) {
+				Chromosome c = order.get(i);
+				if (images == null) evaluate(c);
+				else evaluate(c, images.get(i));
+				worst = Math.min(worst, c.getFitnessValue());
+			}
+		}
+		if (order.size() < subjects.size()) {
+			// keep the screened out and sampled below every fully evaluated chromosome
+			Set<Chromosome> evaluated = new HashSet<Chromosome>(order);
+			for (Chromosome c : subjects) {
+				if (!evaluated.contains(c)) c.setFitnessValue(Math.min(c.getFitnessValue(), worst));
+			}
+		}
 		for (Chromosome c : subjects) {
-			evaluate(c);
 			if (champ == null) champ = c;
 			if (c.getFitnessValue() > champ.getFitnessValue()) {
 				champ = c;
 			}
 		}
+		if (optimizer != null) {
+			logger.info( optimizer );
+			optimizer.reset();
+		}
+		if (planeCache != null) {
+			logger.info( planeCache );
+			planeCache.reset();
+		}
+		// the next generation descends from this one
+		Set<Long> ids = new HashSet<Long>();
+		for (Chromosome c : subjects)
+			ids.add(c.getId());
+		matches.keySet().retainAll(ids);
+		lastGeneration = ids;
+		// the fitness the survivors of this generation reach, before speciation
+		List<Chromosome> ranked = new ArrayList<Chromosome>(subjects);
+		Collections.sort(ranked, new ChromosomeFitnessComparator(false, false));
+		int survivorCount = (int) ((ranked.size() * survivalRate) + 0.5);
+		survivalCutoff = (survivorCount > 0) ? ranked.get(survivorCount - 1).getFitnessValue() : 0;
+		generation++;
 		notifyEvolutionObservers();
 	}
 
+	/**
+	 * Scores every subject against the targets downsampled to the screening resolution, and
+	 * selects those to evaluate at full resolution: the survivors of the last generation, the
+	 * top <code>screenFraction</code> of the offspring, and the offspring scoring above the
+	 * worst survivor of their species. The fitness of the others is set to their screening
+	 * fitness.
+	 * @param subjects
+	 * @param survivors IDs of the survivors of the last generation
+	 * @return the subjects to evaluate at full resolution
+	 */
+	private List<Chromosome> screen(List<Chromosome> subjects, Set<Long> survivors) {
+		List<GrayscaleImage> images = getScreenRenderer().render(subjects);
+		int[] fitness = new int[subjects.size()];
+		List<Integer> offspring = new ArrayList<Integer>();
+		Map<Specie, Integer> worstSurvivor = new HashMap<Specie, Integer>();
+		for (int i = 0; i < fitness.length; i++) {
+			Chromosome c = subjects.get(i);
+			fitness[i] = fitness(c, subjectFeatures.extract(images.get(i)), screenFeatureSets, screenThresholds);
+			if (!survivors.contains(c.getId())) {
+				offspring.add(new Integer(fitness[i]));
+			}
+			else if (c.getSpecie() != null) {
+				Integer worst = worstSurvivor.get(c.getSpecie());
+				if (worst == null || fitness[i] < worst.intValue())
+					worstSurvivor.put(c.getSpecie(), new Integer(fitness[i]));
+			}
+		}
+		Collections.sort(offspring, Collections.reverseOrder());
+		int top = (int) Math.ceil(screenFraction * offspring.size());
+		int cutoff = (top > 0) ? offspring.get(top - 1).intValue() : Integer.MAX_VALUE;
+
+		List<Chromosome> promoted = new ArrayList<Chromosome>();
+		for (int i = 0; i < fitness.length; i++) {
+			Chromosome c = subjects.get(i);
+			Integer worst = (c.getSpecie() == null) ? null : worstSurvivor.get(c.getSpecie());
+			if (survivors.contains(c.getId()) || fitness[i] >= cutoff
+					|| (worst != null && fitness[i] > worst.intValue())) {
+				promoted.add(c);
+			}
+			else {
+				c.setFitnessValue(fitness[i]);
+			}
+		}
+		logger.info( "screened " + subjects.size() + " at " + screenWidth + "x" + screenHeight + ", "
+				+ promoted.size() + " evaluated at " + width + "x" + height );
+		return promoted;
+	}
+
+	/**
+	 * Scores every subject at <code>sampleSize</code> pixels, stratified over the image and
+	 * drawn anew each generation from <code>sampleSeed</code>, and selects the
+	 * <code>sampleElites</code> best, and the champion, to evaluate at every pixel. The fitness
+	 * of the others is set to their sampled fitness.
+	 * @param subjects
+	 * @return the subjects to evaluate at every pixel
+	 */
+	private List<Chromosome> sample(List<Chromosome> subjects) {
+		int[] points = samplePoints(width, height, sampleSize, new Random(sampleSeed * 31 + generation));
+		List<TargetFeature[]> targets = new ArrayList<TargetFeature[]>(targetCount);
+		for (TargetFeature[] full : targetFeatureSets) {
+			TargetFeature pixels = full[Feature.PIXELS.ordinal()];
+			GrayscaleImage image = new GrayscaleImage(points.length, 1);
+			double[] normalized = new double[points.length];
+			for (int p = 0; p < points.length; p++) {
+				image.set(p, pixels.image.get(points[p]));
+				normalized[p] = pixels.normalized[points[p]];
+			}
+			TargetFeature[] target = new TargetFeature[full.length];
+			target[Feature.PIXELS.ordinal()] = new TargetFeature(image, pixels.threshold, normalized);
+			targets.add(target);
+		}
+		ImageRenderer r = getRenderer();
+		List<Chromosome> ranked = new ArrayList<Chromosome>(subjects);
+		for (Chromosome c : ranked) {
+			c.setFitnessValue(fitness(c, subjectFeatures.extract(new GrayscaleImage(points.length, 1, r.render(c, points))), targets, thresholds));
+		}
+		Collections.sort(ranked, new ChromosomeFitnessComparator(false, false));
+
+		List<Chromosome> elites = new ArrayList<Chromosome>();
+		for (Chromosome c : ranked) {
+			if (elites.size() < sampleElites || (champ != null && c.getId().equals(champ.getId())))
+				elites.add(c);
+		}
+		logger.info( "sampled " + subjects.size() + " at " + points.length + " pixels, "
+				+ elites.size() + " evaluated at every pixel" );
+		return elites;
+	}
+
+	/**
+	 * Draws one pixel from each of <code>count</code> cells of a grid over a <code>w</code> by
+	 * <code>h</code> image, the cells chosen at random when the grid has more.
+	 * @return the pixel indices, <code>y * w + x</code>, in ascending order
+	 */
+	private static int[] samplePoints(int w, int h, int count, Random random) {
+		if (count >= w * h) {
+			int[] all = new int[w * h];
+			for (int p = 0; p < all.length; p++)
+				all[p] = p;
+			return all;
+		}
+		int columns = Math.min(w, (int) Math.ceil(Math.sqrt((double) count * w / h)));
+		int rows = Math.min(h, (count + columns - 1) / columns);
+		while (columns * rows < count) {
+			if (columns < w) columns++;
+			else rows++;
+		}
+		int[] cells = new int[columns * rows];
+		for (int i = 0; i < cells.length; i++)
+			cells[i] = i;
+		int[] points = new int[count];
+		for (int i = 0; i < count; i++) {
+			int j = i + random.nextInt(cells.length - i);
+			int cell = cells[j];
+			cells[j] = cells[i];
+			int cx = cell % columns;
+			int cy = cell / columns;
+			int x0 = cx * w / columns;
+			int y0 = cy * h / rows;
+			int x = x0 + random.nextInt(Math.max(1, (cx + 1) * w / columns - x0));
+			int y = y0 + random.nextInt(Math.max(1, (cy + 1) * h / rows - y0));
+			points[i] = y * w + x;
+		}
+		Arrays.sort(points);
+		return points;
+	}
+
+	/**
+	 * Averages an image down to <code>sw</code> by <code>sh</code>, each pixel over the pixels it
+	 * covers.
+	 */
+	private static GrayscaleImage downsample(GrayscaleImage image, int sw, int sh) {
+		int w = image.getWidth();
+		int h = image.getHeight();
+		GrayscaleImage out = new GrayscaleImage(sw, sh);
+		for (int sy = 0; sy < sh; sy++) {
+			int y0 = sy * h / sh;
+			int y1 = Math.max(y0 + 1, (sy + 1) * h / sh);
+			for (int sx = 0; sx < sw; sx++) {
+				int x0 = sx * w / sw;
+				int x1 = Math.max(x0 + 1, (sx + 1) * w / sw);
+				long sum = 0;
+				for (int y = y0; y < y1; y++) {
+					for (int x = x0; x < x1; x++) {
+						sum += image.get(x, y);
+					}
+				}
+				int n = (y1 - y0) * (x1 - x0);
+				out.set(sy * sw + sx, (int) ((sum + n / 2) / n));
+			}
+		}
+		return out;
+	}
+
 	public BufferedImage getChampImage() {
 		if (champ != null) return loadGreyscaleImage(champ);
 		else return null;
@@ -251,9 +877,8 @@ public class ImageEvolver implements BulkFitnessFunction, Configurable {
 	
 	public List<Image> getTargetImages() {
 		LinkedList<Image> images = new LinkedList<Image>();
-		for(int[] pixels : targetFeatureSets_Pixels){
-			BufferedImage image = getImageFromArray(set24bitGreyscale(pixels), width, height);
-			images.add(image);
+		for(GrayscaleImage pixels : targetFeatureSets_Pixels){
+			images.add(pixels.toBufferedImage());
 		}
 		return images;
 	}
@@ -262,8 +887,38 @@ public class ImageEvolver implements BulkFitnessFunction, Configurable {
 	 */
 	public void init(Properties props) throws Exception {
 		ParameterTableInstance.set(new DefaultParameters());
-		height = ParameterTableInstance.get().getInteger("display", "height");
-		width = ParameterTableInstance.get().getInteger("display", "width");
+		height = props.getIntProperty( HEIGHT_KEY, ParameterTableInstance.get().getInteger("display", "height") );
+		width = props.getIntProperty( WIDTH_KEY, ParameterTableInstance.get().getInteger("display", "width") );
+		renderThreads = props.getIntProperty( RENDER_THREADS_KEY, 0 );
+		if (renderThreads <= 0) renderThreads = Runtime.getRuntime().availableProcessors();
+		renderMode = props.getProperty( RENDER_MODE_KEY, ImageRenderer.MODE_PLANE );
+		renderKernels = props.getBooleanProperty( RENDER_KERNELS_KEY, true );
+		renderGenerateThreshold = props.getIntProperty( RENDER_GENERATE_KEY, 0 );
+		renderSeparable = props.getBooleanProperty( RENDER_SEPARABLE_KEY, true );
+		renderAdaptive = props.getBooleanProperty( RENDER_ADAPTIVE_KEY, false );
+		precision = Precision.get( props.getProperty( PRECISION_KEY, Precision.DOUBLE.toString() ) );
+		approximation = ActivationApproximation.get( props.getProperty( ActivationApproximation.ACTIVATION_APPROXIMATION_KEY, ActivationApproximation.EXACT.toString() ) );
+		long cacheBytes = props.getLongProperty( RENDER_CACHE_KEY, Runtime.getRuntime().maxMemory() / 4 );
+		planeCache = (cacheBytes > 0) ? new PlaneCache( cacheBytes ) : null;
+		renderLockstep = props.getBooleanProperty( RENDER_LOCKSTEP_KEY, true );
+		screenWidth = props.getIntProperty( SCREEN_WIDTH_KEY, 0 );
+		screenHeight = props.getIntProperty( SCREEN_HEIGHT_KEY, Math.max(1, screenWidth * height / width) );
+		screenFraction = props.getDoubleProperty( SCREEN_FRACTION_KEY, DEFAULT_SCREEN_FRACTION );
+		if (screenWidth > width || screenHeight > height)
+			throw new IllegalArgumentException( "screening resolution exceeds " + width + "x" + height );
+		if (screenFraction < 0 || screenFraction > 1)
+			throw new IllegalArgumentException( SCREEN_FRACTION_KEY + " must be in [0, 1]" );
+		sampleSize = props.getIntProperty( SAMPLE_SIZE_KEY, 0 );
+		sampleElites = props.getIntProperty( SAMPLE_ELITES_KEY, 1 );
+		sampleSeed = props.getLongProperty( SAMPLE_SEED_KEY, 0 );
+		bound = props.getBooleanProperty( BOUND_KEY, false );
+		boundCutoff = props.getIntProperty( BOUND_CUTOFF_KEY, -1 );
+		survivalRate = props.getFloatProperty( NeatConfiguration.SURVIVAL_RATE_KEY, NeatConfiguration.DEFAULT_SURVIVAL_RATE );
+		if (props.getBooleanProperty( RENDER_OPTIMIZE_KEY, true ))
+			optimizer = new NetOptimizer( props.getDoubleProperty( RENDER_OPTIMIZE_THRESHOLD_KEY, 0.0 ),
+					props.getBooleanProperty( RENDER_OPTIMIZE_MERGE_KEY, false ) );
+		else
+			optimizer = null;
 
 		// Load target chromosome from XML
 		targetImageFile = props.getProperty( TARGET_IMAGE_KEY, DEFAULT_TARGET_IMAGE );	
@@ -273,58 +928,114 @@ public class ImageEvolver implements BulkFitnessFunction, Configurable {
 			Configuration config = new DummyConfiguration();
 			Chromosome targetChromosome = db.loadTargetChromosome( target, config );
 			if ( targetChromosome == null ) throw new IllegalArgumentException( "no chromosome found: " + targetImageFile );
-			targetFeatureSets_Pixels.add(loadImageArray(targetChromosome));
+			targetFeatureSets_Pixels.add(loadImage(targetChromosome));
 			targetCount++;
 		}
 		
-		grayValue = props.getDoubleProperty( GRAYSCALE_SENSITIVITY_KEY, DEFAULT_GRAYSCALE_SENSITIVITY );
-		gradientThreshold = props.getDoubleProperty( GRADIENT_SENSITIVITY_KEY, DEFAULT_GRADIENT_SENSITIVITY );
+		thresholds[Feature.PIXELS.ordinal()] = props.getDoubleProperty( GRAYSCALE_SENSITIVITY_KEY, DEFAULT_GRAYSCALE_SENSITIVITY );
+		thresholds[Feature.GRADIENT.ordinal()] = props.getDoubleProperty( GRADIENT_SENSITIVITY_KEY, DEFAULT_GRADIENT_SENSITIVITY );
 		
-		evaluateGrayscale = props.getBooleanProperty( EVALUATE_GRAYSCALE_KEY, DEFAULT_EVALUATE_GRAYSCALE );
-		evaluateGradient = props.getBooleanProperty( EVALUATE_GRADIENT_KEY, DEFAULT_EVALUATE_GRADIENT );
+		// the features default to those the older evaluate switches turn on
+		boolean evaluateGrayscale = props.getBooleanProperty( EVALUATE_GRAYSCALE_KEY, DEFAULT_EVALUATE_GRAYSCALE );
+		boolean evaluateGradient = props.getBooleanProperty( EVALUATE_GRADIENT_KEY,
+				props.getBooleanProperty( LEGACY_EVALUATE_GRADIENT_KEY, DEFAULT_EVALUATE_GRADIENT ) );
+		boolean evaluateSsim = props.getBooleanProperty( EVALUATE_SSIM_KEY, false );
+		String defaultFeatures = (evaluateGrayscale ? Feature.PIXELS + "," : "") + (evaluateGradient ? Feature.GRADIENT + "," : "")
+				+ (evaluateSsim ? Feature.SSIM.toString() : "");
+		features = Feature.parse( props.getProperty( FEATURES_KEY, defaultFeatures ) );
+		gradientOperator.setThreads( props.getIntProperty( GRADIENT_THREADS_KEY, 1 ) );
+		regionLevels = props.getIntProperty( REGION_LEVELS_KEY, FeatureSet.DEFAULT_REGION_LEVELS );
+		pyramidFilter = Pyramid.Filter.get( props.getProperty( PYRAMID_FILTER_KEY, Pyramid.Filter.BOX.toString() ) );
+		String[] weights = props.getProperty( PYRAMID_WEIGHTS_KEY, "1,1,1,1" ).split(",");
+		pyramidWeights = new double[weights.length];
+		double weightSum = 0.0;
+		for (int l = 0; l < weights.length; l++) {
+			pyramidWeights[l] = Double.parseDouble( weights[l].trim() );
+			if (pyramidWeights[l] < 0.0) throw new IllegalArgumentException( PYRAMID_WEIGHTS_KEY + " must not be negative" );
+			weightSum += pyramidWeights[l];
+		}
+		if (weightSum <= 0.0) throw new IllegalArgumentException( PYRAMID_WEIGHTS_KEY + " must have a positive weight" );
+		ssim = new StructuralSimilarity( props.getIntProperty( SSIM_WINDOW_KEY, StructuralSimilarity.DEFAULT_WINDOW ) );
+		subjectFeatures = newFeatureSet();
+		if (sampleSize > 0 && (features.length > 1 || features[0] != Feature.PIXELS))
+			throw new IllegalArgumentException( SAMPLE_SIZE_KEY + " requires " + FEATURES_KEY + "=" + Feature.PIXELS + ": other features need every pixel" );
 		ff.init(props);
 		
-		System.out.print("gradients...");
-		for(int[] pixels : targetFeatureSets_Pixels){
-			int [] gradient = computeFeatureSet_Gradient(pixels);
-			targetFeatureSets_Gradient.add(gradient);
-		
-			grayValue = 0;
-			for (int i : pixels) {
-				grayValue = Math.max(i, grayValue);
+		System.out.print("features...");
+		for(GrayscaleImage pixels : targetFeatureSets_Pixels){
+			// a feature set of its own, so the features of each target are kept
+			FeatureSet targetFeatures = newFeatureSet().extract(pixels);
+			TargetFeature[] target = new TargetFeature[Feature.values().length];
+			for (Feature f : features) {
+				GrayscaleImage feature = targetFeatures.get(f);
+				thresholds[f.ordinal()] = f.threshold(feature);
+				target[f.ordinal()] = new TargetFeature(feature, thresholds[f.ordinal()], normalize(feature, thresholds[f.ordinal()]),
+						(f == Feature.SSIM) ? new IntegralImage(feature) : null);
 			}
-			int min = Integer.MAX_VALUE;
-			int max = Integer.MIN_VALUE;
-			for (int i : gradient) {
-				min = Math.min(i, min);
-				max = Math.max(i, max);
+			System.out.print("normalizing(" + thresholds[Feature.PIXELS.ordinal()] + ", " + thresholds[Feature.GRADIENT.ordinal()] + ")...");
+			targetFeatureSets.add(target);
+
+			if (screenWidth > 0) {
+				// screen pixels keep the full resolution gray level threshold
+				FeatureSet screenFeatures = newFeatureSet().extract(downsample(pixels, screenWidth, screenHeight));
+				TargetFeature[] screen = new TargetFeature[Feature.values().length];
+				for (Feature f : features) {
+					GrayscaleImage feature = screenFeatures.get(f);
+					screenThresholds[f.ordinal()] = (f == Feature.PIXELS) ? thresholds[f.ordinal()] : f.threshold(feature);
+					screen[f.ordinal()] = new TargetFeature(feature, screenThresholds[f.ordinal()], normalize(feature, screenThresholds[f.ordinal()]),
+							(f == Feature.SSIM) ? new IntegralImage(feature) : null);
+				}
+				screenFeatureSets.add(screen);
 			}
-			gradientThreshold = max - min;
-			
-			System.out.print("normalizing(" +grayValue+ ", " +gradientThreshold+ ")...");
-			normalizedTargetFeatureSets_Pixels.add(normalize(pixels, grayValue));
-			normalizedTargetFeatureSets_Gradient.add(normalize(gradient, gradientThreshold));
 		}
 		System.out.println("done.");
 				
 		if (visable) new EvolutionViewer(this);
 	}
 	
+	/**
+	 * @return a feature set extracting the configured features
+	 */
+	private FeatureSet newFeatureSet() {
+		FeatureSet set = new FeatureSet(features, gradientOperator);
+		set.setRegionLevels(regionLevels);
+		set.setPyramid(pyramidFilter, pyramidWeights.length);
+		return set;
+	}
+
 	/**
 	 * Scale values down to fractions in the range [-1, 1]. The sign is preserved
 	 * @param input
 	 * @return
 	 */
-	private double[] normalize(int[] input, double threshold) {
-		double[] output = new double[input.length];
+	private double[] normalize(GrayscaleImage input, double threshold) {
+		return normalize(input.getPixels(), threshold, 0, input.getPixels().length);
+	}
+
+	/**
+	 * <code>normalize(GrayscaleImage, double)</code> of elements [from, from + length) of
+	 * <code>pixels</code>
+	 */
+	private double[] normalize(byte[] pixels, double threshold, int from, int length) {
+		double[] output = new double[length];
 		if (threshold > 0.0) {
-			for (int i=0; i<input.length; i++) {
-				output[i] = (double) input[i]/threshold;
+			for (int i=0; i<length; i++) {
+				output[i] = (double) (pixels[from + i] & 0xFF)/threshold;
 			}
 		}
 		return output;
 	}
 
+	/**
+	 * @return a copy of elements [from, from + length) of <code>values</code>
+	 */
+	private static double[] slice(double[] values, int from, int length) {
+		if (from == 0 && length == values.length) return values;
+		double[] slice = new double[length];
+		System.arraycopy(values, from, slice, 0, length);
+		return slice;
+	}
+
 	public void notifyEvolutionObservers() {
 		for (EvolutionObserver o : champObservers)
 			o.updateChampImage(getChampImage());
@@ -339,12 +1050,4 @@ public class ImageEvolver implements BulkFitnessFunction, Configurable {
 			champObservers.remove(o);
 		}
 	}
-
-	private int[] set8bitGrayscale(int[] image) {
-		int[] out = new int[image.length];
-		for (int i=0; i<image.length; i++) {
-			out[i] = image[i] & 0xFF;
-		}
-		return out;
-	}
 }
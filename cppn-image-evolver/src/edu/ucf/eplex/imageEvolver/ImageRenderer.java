@@ -0,0 +1,1437 @@
+/**
+ * Copyright (C) 2010 Brian Woolley
+ *
+ * This file is part of the octopusArm simulator.
+ *
+ * The octopusArm simulator is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ */
+package edu.ucf.eplex.imageEvolver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jgap.Chromosome;
+
+import com.anji.activationFunction.ActivationApproximation;
+import com.anji.integration.AnjiNetTranscriber;
+import com.anji.integration.TranscriberException;
+import com.anji.neat.NeuronAllele;
+import com.anji.neat.NeuronType;
+import com.anji.nn.CompiledNet;
+import com.anji.nn.GeneratedNet;
+import com.anji.nn.NetClassGenerator;
+import com.anji.nn.NetOptimizer;
+import com.anji.nn.Precision;
+import com.anji.nn.RecurrencyPolicy;
+
+/**
+ * Renders the grayscale image of a CPPN chromosome. The chromosome is transcribed with
+ * <code>AnjiNetTranscriber</code>, compiled to a <code>CompiledNet</code> and activated once
+ * per pixel. Inputs follow the picbreeder convention used by the target chromosomes: the
+ * input neurons labelled <code>x</code>, <code>y</code>, <code>d</code> and <code>bias</code>
+ * (or, for unlabelled chromosomes, innovation IDs 2, 3, 1 and 0) receive the pixel's
+ * coordinates in [-1, 1], its scaled distance from the center, and a constant 1.0. The output
+ * labelled <code>ink</code> (or ID 4) is mapped to a gray level by <code>|v| * 255</code>, and
+ * the image is returned as a <code>GrayscaleImage</code>.
+ * <p>
+ * In <code>MODE_PIXEL</code> the network is activated pixel by pixel. In
+ * <code>MODE_PLANE</code> each neuron is evaluated over a block of rows at once (see
+ * <code>CompiledNet.activate( double[][], int, double[][], int )</code>); both produce the
+ * same image.
+ * <p>
+ * Chromosomes that survive from generation to generation are rendered again every time they
+ * are evaluated. Once a chromosome has been rendered <code>generateThreshold</code> times its
+ * network is compiled to a class of its own by <code>NetClassGenerator</code> and later
+ * renders use that class, which also gives the same image. Classes are only generated when
+ * the activation functions are evaluated exactly.
+ * <p>
+ * Plane mode is separable by default: neurons that depend only on <code>x</code> (besides
+ * constants) are evaluated once per column, <code>y</code>-only neurons once per row and
+ * <code>d</code>-only neurons once per distinct radius, and their values are broadcast to the
+ * pixels of the neurons that combine several inputs. Each value is computed from the same
+ * inputs by the same operations, so the image is unchanged.
+ * <p>
+ * An adaptive renderer propagates interval bounds of <code>x</code>, <code>y</code> and
+ * <code>d</code> over a tile through the network, fills the tile if its output is bounded to
+ * one gray level and subdivides it otherwise, so large smooth regions are never evaluated pixel
+ * by pixel. The bounds are conservative, so the image is unchanged.
+ * <p>
+ * With a <code>precision</code> other than <code>DOUBLE</code> every neuron is evaluated over
+ * row blocks in <code>float</code> or 16.16 fixed point, whatever the mode; the image may then
+ * differ slightly from the double precision one.
+ * <p>
+ * With more than one thread, the row blocks of each image are rendered in parallel, so large
+ * images render with a latency that scales with the number of cores. Each thread evaluates the
+ * blocks it takes with its own planes; the image is the same for any number of threads.
+ * <code>MODE_PIXEL</code> always renders on the calling thread.
+ * <p>
+ * Given a <code>PlaneCache</code>, double precision plane renders look up the plane of each
+ * neuron by its signature and evaluate only the neurons not found, such as those downstream of
+ * the mutations of an offspring whose parent was rendered. The planes evaluated for the
+ * chromosomes the cache wants are stored for later renders.
+ */
+public class ImageRenderer {
+
+	/** activate the network once per pixel */
+	public static final String MODE_PIXEL = "pixel";
+
+	/** activate the network one neuron plane at a time */
+	public static final String MODE_PLANE = "plane";
+
+	/** number of pixels per plane block; sized so a block of every plane stays in cache */
+	private static final int PLANE_BLOCK_SIZE = 2048;
+
+	/**
+	 * tiles of at most this many pixels on each side are evaluated rather than subdivided; the
+	 * bounds of a tile cost about as much as evaluating a few of its pixels
+	 */
+	private static final int ADAPTIVE_TILE_SIZE = 16;
+
+	/** largest number of chromosomes rendered in lockstep */
+	private static final int LOCKSTEP_SIZE = 8;
+
+	/** index of the planes of neurons depending on no input among those of each input group */
+	private static final int GROUP_NONE = 3;
+
+	/** number of chromosomes whose render counts and generated classes are remembered */
+	private static final int PROGRAM_CACHE_SIZE = 1024;
+
+	/**
+	 * Render count and, once generated, the generated class of a chromosome.
+	 */
+	private static class Program {
+		private int renders = 0;
+		private boolean failed = false;
+		private GeneratedNet generated;
+		private int[] channels;
+		private int output;
+		private int outputDimension;
+	}
+
+	/**
+	 * A chromosome compiled and optimized for rendering into <code>image</code>.
+	 */
+	private static class Prepared {
+		private final CompiledNet net;
+		private final int[] channels;
+		private final int output;
+		private final GrayscaleImage image;
+		private final byte[] pixels;
+		private Reuse reuse;
+		private BlockListener listener;
+
+		private Prepared(CompiledNet net, int[] channels, int output, GrayscaleImage image) {
+			this.net = net;
+			this.channels = channels;
+			this.output = output;
+			this.image = image;
+			pixels = (image == null) ? null : image.getPixels();
+		}
+	}
+
+	/**
+	 * Renders the row blocks of one image. Each thread rendering blocks gets planes of its own
+	 * from <code>newPlanes()</code>.
+	 */
+	private interface BlockRenderer<P> {
+		P newPlanes(int length);
+		void render(P planes, int offset, int length);
+	}
+
+	/**
+	 * Receives the row blocks of an image from
+	 * <code>render( Chromosome, GrayscaleImage, BlockListener )</code> as they are rendered.
+	 */
+	public interface BlockListener {
+		/**
+		 * @param image the image
+		 * @param offset index of the first pixel of the block
+		 * @param length number of pixels of the block
+		 * @return false to stop rendering
+		 */
+		boolean rendered(GrayscaleImage image, int offset, int length);
+	}
+
+	/**
+	 * Planes a render reuses from the cache and the planes it stores, one array per row block.
+	 */
+	private static class Reuse {
+		private final long[] signatures;
+		private final double[][][] cached;
+		private final double[][][] stored;
+		private final boolean[] computed;
+		private final boolean[] valid;
+		private final boolean store;
+
+		private Reuse(long[] signatures, double[][][] cached, int blocks, boolean store) {
+			this.signatures = signatures;
+			this.store = store;
+			this.cached = cached;
+			stored = store ? new double[cached.length][blocks][] : null;
+			computed = new boolean[cached.length];
+			valid = new boolean[cached.length];
+			for (int i = 0; i < cached.length; i++) {
+				computed[i] = (cached[i] == null);
+				valid[i] = true;
+			}
+		}
+
+		/**
+		 * Points <code>planes</code> at the cached planes of block <code>b</code>, and, if the
+		 * planes are to be stored, at new planes for the neurons to evaluate. Neurons that are
+		 * not <code>valid</code> are neither reused nor stored and keep the caller's planes.
+		 */
+		private void attach(double[][] planes, int b, int length) {
+			for (int i = 0; i < planes.length; i++) {
+				if (!valid[i] || (computed[i] && !store)) continue;
+				planes[i] = computed[i] ? new double[length] : cached[i][b];
+				if (store) stored[i][b] = planes[i];
+			}
+		}
+
+		/**
+		 * @return true if the plane of any neuron was found in the cache
+		 */
+		private boolean found() {
+			for (boolean c : computed) {
+				if (!c) return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Limits reuse and storage to the neurons selected by <code>mask</code>.
+		 */
+		private void restrict(boolean[] mask) {
+			for (int i = 0; i < valid.length; i++) {
+				valid[i] = mask[i];
+				computed[i] |= !mask[i];
+			}
+		}
+	}
+
+	/** creates the daemon threads of the render pools, so they never keep the VM alive */
+	private static final ThreadFactory DAEMON_THREADS = new ThreadFactory() {
+		private final AtomicInteger count = new AtomicInteger();
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "ImageRenderer-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	};
+
+	static final int INPUT_NONE = -1;
+	static final int INPUT_X = 0;
+	static final int INPUT_Y = 1;
+	static final int INPUT_D = 2;
+	static final int INPUT_BIAS = 3;
+
+	private static final String[] INPUT_LABELS = { "x", "y", "d", "bias" };
+	private static final long[] INPUT_DEFAULT_IDS = { 2, 3, 1, 0 };
+
+	private static final String OUTPUT_LABEL = "ink";
+	private static final long OUTPUT_DEFAULT_ID = 4;
+
+	private static final double BIAS = 1.0;
+	private static final double X_SCALE = 1.0;
+	private static final double Y_SCALE = 1.0;
+	private static final double DISTANCE_SCALE = Math.sqrt(2.0);
+
+	/**
+	 * Maps an input pixel coordinate into the range (-1, 1), sampling at pixel centers.
+	 * @param i pixel column (or row)
+	 * @param size image width (or height)
+	 * @return the CPPN input coordinate
+	 */
+	static double computeInput(int i, int size) {
+		return (double) ((i << 1) - size + 1) / size;
+	}
+
+	/**
+	 * Converts the CPPN output to an 8-bit gray level.  NaN renders as black.
+	 * @param v the value of the output neuron
+	 * @return a gray level in [0, 255]
+	 */
+	static int toGray(double v) {
+		return (int) Math.max(0.0, Math.min(255.0, Math.min(Math.abs(v), 1.0) * 255.0));
+	}
+
+	/**
+	 * @param lo lower bound of the output
+	 * @param hi upper bound of the output
+	 * @return the gray level of every value in [lo, hi], or -1 if they differ or the bounds
+	 * are unknown
+	 */
+	static int toGray(double lo, double hi) {
+		if (!(lo <= hi)) return -1;
+		int a = toGray(lo);
+		int b = toGray(hi);
+		if (lo < 0 && hi > 0) return (a == 0 && b == 0) ? 0 : -1;
+		return (a == b) ? a : -1;
+	}
+
+	/**
+	 * Identifies which CPPN input each input neuron of <code>net</code> receives.
+	 * @param ch the chromosome <code>net</code> was compiled from
+	 * @param net the compiled network
+	 * @return one of the <code>INPUT_*</code> constants for each network input
+	 */
+	static int[] getInputChannels(Chromosome ch, CompiledNet net) {
+		long[] ids = new long[INPUT_LABELS.length];
+		for (int c = 0; c < ids.length; c++) {
+			ids[c] = INPUT_DEFAULT_IDS[c];
+			for (NeuronAllele n : ch.getNodes()) {
+				if (n.isType(NeuronType.INPUT) && INPUT_LABELS[c].equals(n.getLabel())) {
+					ids[c] = n.getInnovationId().longValue();
+					break;
+				}
+			}
+		}
+		int[] channels = new int[net.getInputDimension()];
+		for (int i = 0; i < channels.length; i++) {
+			channels[i] = INPUT_NONE;
+			for (int c = 0; c < ids.length; c++) {
+				if (net.getInputId(i) == ids[c]) channels[i] = c;
+			}
+		}
+		return channels;
+	}
+
+	/**
+	 * Identifies the output neuron that carries the gray level.
+	 * @param ch the chromosome <code>net</code> was compiled from
+	 * @param net the compiled network
+	 * @return the index of the output neuron
+	 */
+	static int getOutputIndex(Chromosome ch, CompiledNet net) {
+		long id = OUTPUT_DEFAULT_ID;
+		for (NeuronAllele n : ch.getNodes()) {
+			if (n.isType(NeuronType.OUTPUT) && OUTPUT_LABEL.equals(n.getLabel())) {
+				id = n.getInnovationId().longValue();
+				break;
+			}
+		}
+		for (int i = 0; i < net.getOutputDimension(); i++) {
+			if (net.getOutputId(i) == id) return i;
+		}
+		return 0;
+	}
+
+	private final int width;
+	private final int height;
+	private final int blockSize;
+	private final boolean planeMode;
+	private boolean planeKernels = true;
+	private int generateThreshold = 0;
+	private NetOptimizer optimizer = null;
+	private ActivationApproximation approximation = ActivationApproximation.EXACT;
+	private Precision precision = Precision.DOUBLE;
+	private int threads = 1;
+	private ExecutorService executor = null;
+	private PlaneCache planeCache = null;
+
+	private final Map<Long, Program> programs = new LinkedHashMap<Long, Program>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		protected boolean removeEldestEntry(Map.Entry<Long, Program> eldest) {
+			return size() > PROGRAM_CACHE_SIZE;
+		}
+	};
+
+	private final double[] xInputs;
+	private final double[] yInputs;
+	private final double[] dInputs;
+
+	private final double[][] inputPlanes;
+	private final double[] zeroPlane;
+	private volatile float[][] floatInputPlanes;
+	private volatile int[][] fixedInputPlanes;
+
+	private final int[] radiusIndex;
+	private final double[] radii;
+	private boolean separable = true;
+	private boolean adaptive = false;
+	private long adaptivePixels = 0;
+	private long evaluatedPixels = 0;
+	private long tileBounds = 0;
+
+	private final AnjiNetTranscriber transcriber = new AnjiNetTranscriber(RecurrencyPolicy.DISALLOWED);
+
+	/**
+	 * Creates a renderer in <code>MODE_PLANE</code>.
+	 * @param width image width in pixels
+	 * @param height image height in pixels
+	 */
+	public ImageRenderer(int width, int height) {
+		this(width, height, MODE_PLANE);
+	}
+
+	/**
+	 * @param width image width in pixels
+	 * @param height image height in pixels
+	 * @param mode <code>MODE_PIXEL</code> or <code>MODE_PLANE</code>
+	 */
+	public ImageRenderer(int width, int height, String mode) {
+		if (MODE_PLANE.equals(mode)) planeMode = true;
+		else if (MODE_PIXEL.equals(mode)) planeMode = false;
+		else throw new IllegalArgumentException("unknown render mode: " + mode);
+		this.width = width;
+		this.height = height;
+		blockSize = Math.min(Math.max(1, PLANE_BLOCK_SIZE / width) * width, width * height);
+
+		xInputs = new double[width];
+		for (int x = 0; x < width; x++)
+			xInputs[x] = computeInput(x, width) * X_SCALE;
+		yInputs = new double[height];
+		for (int y = 0; y < height; y++)
+			yInputs[y] = computeInput(y, height) * Y_SCALE;
+		dInputs = new double[width * height];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				dInputs[y * width + x] = Math.sqrt(xInputs[x] * xInputs[x] + yInputs[y] * yInputs[y]) * DISTANCE_SCALE;
+			}
+		}
+
+		inputPlanes = new double[INPUT_LABELS.length][width * height];
+		for (int y = 0, p = 0; y < height; y++) {
+			for (int x = 0; x < width; x++, p++) {
+				inputPlanes[INPUT_X][p] = xInputs[x];
+				inputPlanes[INPUT_Y][p] = yInputs[y];
+				inputPlanes[INPUT_D][p] = dInputs[p];
+				inputPlanes[INPUT_BIAS][p] = BIAS;
+			}
+		}
+		zeroPlane = new double[width * height];
+
+		// distinct values of d, and which one each pixel has
+		radiusIndex = new int[width * height];
+		Map<Long, Integer> distinct = new HashMap<Long, Integer>();
+		double[] values = new double[width * height];
+		for (int p = 0; p < dInputs.length; p++) {
+			Long bits = new Long(Double.doubleToLongBits(dInputs[p]));
+			Integer idx = distinct.get(bits);
+			if (idx == null) {
+				idx = new Integer(distinct.size());
+				distinct.put(bits, idx);
+				values[idx.intValue()] = dInputs[p];
+			}
+			radiusIndex[p] = idx.intValue();
+		}
+		radii = new double[distinct.size()];
+		System.arraycopy(values, 0, radii, 0, radii.length);
+	}
+
+	/**
+	 * Compiles <code>ch</code> into a network suitable for rendering.
+	 * @param ch a feed-forward CPPN chromosome
+	 * @return the compiled network
+	 * @throws IllegalArgumentException if the chromosome can not be transcribed
+	 */
+	public CompiledNet compile(Chromosome ch) {
+		try {
+			return transcriber.newCompiledNet(ch);
+		} catch (TranscriberException e) {
+			throw new IllegalArgumentException("can not render " + ch, e);
+		}
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return true if <code>MODE_PLANE</code> uses <code>PlaneKernels</code>
+	 */
+	public boolean isPlaneKernels() {
+		return planeKernels;
+	}
+
+	/**
+	 * @param planeKernels true to evaluate planes with <code>PlaneKernels</code>, false for the
+	 * scalar fallback
+	 */
+	public void setPlaneKernels(boolean planeKernels) {
+		this.planeKernels = planeKernels;
+	}
+
+	/**
+	 * @return number of renders of a chromosome after which it is rendered by a generated class;
+	 * 0 if classes are never generated
+	 */
+	public int getGenerateThreshold() {
+		return generateThreshold;
+	}
+
+	/**
+	 * @param generateThreshold number of renders of a chromosome after which it is rendered by a
+	 * generated class; 0 to never generate classes
+	 */
+	public void setGenerateThreshold(int generateThreshold) {
+		if (generateThreshold < 0) throw new IllegalArgumentException("generate threshold must be >= 0");
+		this.generateThreshold = generateThreshold;
+	}
+
+	/**
+	 * @return approximation of the activation functions
+	 */
+	public ActivationApproximation getApproximation() {
+		return approximation;
+	}
+
+	/**
+	 * @param approximation approximation of the activation functions; anything but
+	 * <code>EXACT</code> may change gray levels by about one
+	 */
+	public void setApproximation(ActivationApproximation approximation) {
+		this.approximation = approximation;
+	}
+
+	/**
+	 * @return number format networks are evaluated in
+	 */
+	public Precision getPrecision() {
+		return precision;
+	}
+
+	/**
+	 * @param precision number format to evaluate networks in; anything but <code>DOUBLE</code>
+	 * may change gray levels
+	 */
+	public void setPrecision(Precision precision) {
+		this.precision = precision;
+	}
+
+	/**
+	 * @return optimizer applied to each network before rendering, or null
+	 */
+	public NetOptimizer getOptimizer() {
+		return optimizer;
+	}
+
+	/**
+	 * @param optimizer optimizer to apply to each network before rendering, or null for none
+	 */
+	public void setOptimizer(NetOptimizer optimizer) {
+		this.optimizer = optimizer;
+	}
+
+	/**
+	 * @return true if <code>MODE_PLANE</code> evaluates single-input neurons once per row, column
+	 * or radius
+	 */
+	public boolean isSeparable() {
+		return separable;
+	}
+
+	/**
+	 * @param separable true to evaluate single-input neurons once per row, column or radius in
+	 * <code>MODE_PLANE</code>, false to evaluate every neuron at every pixel
+	 */
+	public void setSeparable(boolean separable) {
+		this.separable = separable;
+	}
+
+	/**
+	 * @return number of threads rendering the row blocks of an image
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * @param threads number of threads rendering the row blocks of an image; 1 renders on the
+	 * calling thread
+	 */
+	public synchronized void setThreads(int threads) {
+		if (threads < 1) throw new IllegalArgumentException("threads must be >= 1");
+		if (threads == this.threads) return;
+		if (executor != null) executor.shutdown();
+		executor = (threads > 1) ? Executors.newFixedThreadPool(threads, DAEMON_THREADS) : null;
+		this.threads = threads;
+	}
+
+	/**
+	 * @return true if double precision plane renders with exact activation functions
+	 * subdivide the image by interval bounds
+	 */
+	public boolean isAdaptive() {
+		return adaptive;
+	}
+
+	/**
+	 * @param adaptive true to render double precision <code>MODE_PLANE</code> images with exact
+	 * activation functions by bounding the output over tiles, filling each tile whose bounds
+	 * fit in one gray level and subdividing the others; the image is the same as rendered
+	 * pixel by pixel
+	 */
+	public void setAdaptive(boolean adaptive) {
+		this.adaptive = adaptive;
+	}
+
+	/**
+	 * @return number of pixels rendered adaptively since the last
+	 * <code>resetAdaptiveCounts()</code>
+	 */
+	public synchronized long getAdaptivePixels() {
+		return adaptivePixels;
+	}
+
+	/**
+	 * @return number of the adaptively rendered pixels whose networks were evaluated, rather
+	 * than filled from the bounds of their tile
+	 */
+	public synchronized long getEvaluatedPixels() {
+		return evaluatedPixels;
+	}
+
+	/**
+	 * @return number of tiles whose bounds were evaluated
+	 */
+	public synchronized long getTileBounds() {
+		return tileBounds;
+	}
+
+	/**
+	 * Resets the counts of adaptive rendering.
+	 */
+	public synchronized void resetAdaptiveCounts() {
+		adaptivePixels = evaluatedPixels = tileBounds = 0;
+	}
+
+	/**
+	 * @return cache of neuron planes, or null
+	 */
+	public PlaneCache getPlaneCache() {
+		return planeCache;
+	}
+
+	/**
+	 * @param planeCache cache of neuron planes shared between renders, or null for none
+	 */
+	public void setPlaneCache(PlaneCache planeCache) {
+		this.planeCache = planeCache;
+	}
+
+	/**
+	 * @return <code>MODE_PIXEL</code> or <code>MODE_PLANE</code>
+	 */
+	public String getMode() {
+		return planeMode ? MODE_PLANE : MODE_PIXEL;
+	}
+
+	/**
+	 * Renders the grayscale image of <code>ch</code>.
+	 * @param ch a feed-forward CPPN chromosome
+	 * @return the image
+	 */
+	public GrayscaleImage render(Chromosome ch) {
+		GrayscaleImage image = new GrayscaleImage(width, height);
+		Program program = getProgram(ch);
+		if (program != null) renderGenerated(program, image.getPixels());
+		else render(prepare(ch, image));
+		return image;
+	}
+
+	/**
+	 * Renders the grayscale images of <code>chs</code>. In double precision
+	 * <code>MODE_PLANE</code>, chromosomes whose optimized networks have the same topology and
+	 * inputs, as members of a species often do, are rendered in lockstep batches of up to
+	 * <code>LOCKSTEP_SIZE</code>; see
+	 * <code>CompiledNet.activate(CompiledNet[], boolean[], double[][], int, double[][][], int, boolean[])</code>.
+	 * Chromosomes that reuse or store planes in the <code>PlaneCache</code> are rendered on their
+	 * own.
+	 * @param chs feed-forward CPPN chromosomes
+	 * @return the image of each chromosome, as from <code>render(Chromosome)</code>
+	 */
+	public List<GrayscaleImage> render(List<Chromosome> chs) {
+		List<GrayscaleImage> images = new ArrayList<GrayscaleImage>(chs.size());
+		Map<Long, List<List<Prepared>>> batches = new LinkedHashMap<Long, List<List<Prepared>>>();
+		for (Chromosome ch : chs) {
+			GrayscaleImage image = new GrayscaleImage(width, height);
+			images.add(image);
+			Program program = getProgram(ch);
+			if (program != null) {
+				renderGenerated(program, image.getPixels());
+				continue;
+			}
+			Prepared job = prepare(ch, image);
+			if (precision != Precision.DOUBLE || !planeMode || isAdaptiveRender() || (job.reuse != null && (job.reuse.store || job.reuse.found()))) {
+				render(job);
+				continue;
+			}
+			Long key = new Long(job.net.getTopology() * 31 + Arrays.hashCode(job.channels) * 31 + job.output);
+			List<List<Prepared>> candidates = batches.get(key);
+			if (candidates == null) {
+				candidates = new ArrayList<List<Prepared>>();
+				batches.put(key, candidates);
+			}
+			List<Prepared> batch = null;
+			for (List<Prepared> candidate : candidates) {
+				Prepared first = candidate.get(0);
+				if (candidate.size() < LOCKSTEP_SIZE && first.output == job.output
+						&& Arrays.equals(first.channels, job.channels) && first.net.sameTopology(job.net)) {
+					batch = candidate;
+					break;
+				}
+			}
+			if (batch == null) {
+				batch = new ArrayList<Prepared>();
+				candidates.add(batch);
+			}
+			batch.add(job);
+		}
+		for (List<List<Prepared>> candidates : batches.values()) {
+			for (List<Prepared> batch : candidates) {
+				if (batch.size() == 1) render(batch.get(0));
+				else renderLockstep(batch);
+			}
+		}
+		return images;
+	}
+
+	/**
+	 * Evaluates the CPPN of <code>ch</code> at the given pixels only, as planes as long as
+	 * <code>points</code>. Each gray level is the one <code>render(Chromosome)</code> gives the
+	 * pixel, in the configured precision and approximation.
+	 * @param ch a feed-forward CPPN chromosome
+	 * @param points pixel indices, <code>y * width + x</code>
+	 * @return the gray level of each point
+	 */
+	public byte[] render(Chromosome ch, int[] points) {
+		Prepared job = compile(ch, null);
+		CompiledNet net = job.net;
+		int[] channels = job.channels;
+		net.setPlaneKernels(planeKernels);
+		int outNeuron = net.getOutputIndex(job.output);
+		int length = points.length;
+		double[][] stimuli = new double[channels.length][length];
+		for (int i = 0; i < channels.length; i++) {
+			if (channels[i] == INPUT_NONE) continue;
+			double[] source = inputPlanes[channels[i]];
+			for (int p = 0; p < length; p++)
+				stimuli[i][p] = source[points[p]];
+		}
+		byte[] gray = new byte[length];
+		if (precision == Precision.FLOAT) {
+			float[][] floatStimuli = new float[channels.length][];
+			for (int i = 0; i < channels.length; i++)
+				floatStimuli[i] = Precision.toFloat(stimuli[i]);
+			float[][] planes = net.newFloatPlanes(length);
+			net.activate(floatStimuli, 0, planes, length);
+			for (int p = 0; p < length; p++)
+				gray[p] = (byte) toGray(planes[outNeuron][p]);
+		} else if (precision == Precision.FIXED) {
+			int[][] fixedStimuli = new int[channels.length][];
+			for (int i = 0; i < channels.length; i++)
+				fixedStimuli[i] = Precision.toFixed(stimuli[i]);
+			int[][] planes = net.newFixedPlanes(length);
+			net.activateFixed(fixedStimuli, 0, planes, length);
+			for (int p = 0; p < length; p++)
+				gray[p] = (byte) toGray(Precision.fromFixed(planes[outNeuron][p]));
+		} else {
+			double[][] planes = net.newPlanes(length);
+			net.activate(stimuli, 0, planes, length);
+			for (int p = 0; p < length; p++)
+				gray[p] = (byte) toGray(planes[outNeuron][p]);
+		}
+		return gray;
+	}
+
+	/**
+	 * Renders the image of <code>ch</code> one row block after another, in order, handing each
+	 * block to <code>listener</code> as soon as it is rendered, until the listener stops it. Only
+	 * double precision plane renders that are not adaptive are split; otherwise the whole image
+	 * is one block. Planes of a render that was stopped are not stored in the cache.
+	 * @param ch a feed-forward CPPN chromosome
+	 * @param image receives the gray level of each pixel rendered
+	 * @param listener
+	 * @return true if every block was rendered, false if <code>listener</code> stopped it
+	 */
+	public boolean render(Chromosome ch, GrayscaleImage image, BlockListener listener) {
+		if (image.getWidth() != width || image.getHeight() != height) throw new IllegalArgumentException("image must be " + width + "x" + height);
+		Program program = getProgram(ch);
+		if (program != null) {
+			renderGenerated(program, image.getPixels());
+			return listener.rendered(image, 0, width * height);
+		}
+		Prepared job = prepare(ch, image);
+		job.listener = listener;
+		return render(job);
+	}
+
+	/**
+	 * Compiles and optimizes <code>ch</code>.
+	 */
+	private Prepared compile(Chromosome ch, GrayscaleImage image) {
+		CompiledNet net = compile(ch);
+		int[] channels = getInputChannels(ch, net);
+		int output = getOutputIndex(ch, net);
+		net = optimize(net, channels);
+		net.setApproximation(approximation);
+		return new Prepared(net, channels, output, image);
+	}
+
+	/**
+	 * Compiles and optimizes <code>ch</code>, and looks up its cached planes.
+	 */
+	private Prepared prepare(Chromosome ch, GrayscaleImage image) {
+		Prepared job = compile(ch, image);
+		if (precision == Precision.DOUBLE && planeMode && !isAdaptiveRender()) job.reuse = getReuse(ch, job.net, job.channels);
+		return job;
+	}
+
+	/**
+	 * @return true if <code>adaptive</code> applies to the current settings
+	 */
+	private boolean isAdaptiveRender() {
+		return adaptive && planeMode && precision == Precision.DOUBLE && approximation == ActivationApproximation.EXACT;
+	}
+
+	/**
+	 * @return false if <code>job.listener</code> stopped the render
+	 */
+	private boolean render(Prepared job) {
+		if (precision == Precision.FLOAT) renderFloat(job.net, job.channels, job.output, job.pixels);
+		else if (precision == Precision.FIXED) renderFixed(job.net, job.channels, job.output, job.pixels);
+		else if (isAdaptiveRender()) renderAdaptive(job.net, job.channels, job.output, job.pixels);
+		else if (planeMode) {
+			if (!renderPlanes(job.net, job.channels, job.output, job.image, job.reuse, job.listener)) return false;
+			if (job.reuse != null) store(job.reuse);
+			return true;
+		}
+		else renderPixels(job.net, job.channels, job.output, job.pixels);
+		return job.listener == null || job.listener.rendered(job.image, 0, job.pixels.length);
+	}
+
+	/**
+	 * Looks up the cached plane of each neuron of <code>ch</code> by signature.
+	 * @return planes to reuse or store, or null if there is no cache
+	 */
+	private Reuse getReuse(Chromosome ch, CompiledNet net, int[] channels) {
+		if (planeCache == null) return null;
+		long[] inputSignatures = new long[channels.length];
+		for (int i = 0; i < channels.length; i++)
+			inputSignatures[i] = ((long) width << 40) ^ ((long) height << 16) ^ (channels[i] + 1);
+		long[] signatures = net.getSignatures(inputSignatures);
+		double[][][] cached = new double[signatures.length][][];
+		for (int i = 0; i < signatures.length; i++)
+			cached[i] = planeCache.get(signatures[i]);
+		return new Reuse(signatures, cached, (width * height + blockSize - 1) / blockSize, planeCache.wants(ch.getId()));
+	}
+
+	/**
+	 * Counts the hits and misses of a render and stores the planes it evaluated.
+	 */
+	private void store(Reuse reuse) {
+		int hits = 0;
+		int misses = 0;
+		long bytes = (long) width * height * 8;
+		for (int i = 0; i < reuse.signatures.length; i++) {
+			if (!reuse.valid[i]) continue;
+			if (!reuse.computed[i]) hits++;
+			else {
+				misses++;
+				if (reuse.store) planeCache.put(reuse.signatures[i], reuse.stored[i], bytes);
+			}
+		}
+		planeCache.count(hits, misses);
+	}
+
+	/**
+	 * Counts a render of <code>ch</code> and generates its class once it reaches
+	 * <code>generateThreshold</code>.
+	 * @param ch
+	 * @return the generated program of <code>ch</code>, or null to render it normally
+	 */
+	private Program getProgram(Chromosome ch) {
+		if (generateThreshold == 0 || approximation != ActivationApproximation.EXACT || precision != Precision.DOUBLE) return null;
+		Program program;
+		synchronized (programs) {
+			program = programs.get(ch.getId());
+			if (program == null) {
+				program = new Program();
+				programs.put(ch.getId(), program);
+			}
+		}
+		synchronized (program) {
+			if (program.generated == null && !program.failed && ++program.renders >= generateThreshold) {
+				CompiledNet net = compile(ch);
+				try {
+					program.channels = getInputChannels(ch, net);
+					program.output = getOutputIndex(ch, net);
+					program.generated = NetClassGenerator.generate(optimize(net, program.channels));
+					program.outputDimension = net.getOutputDimension();
+				} catch (IllegalArgumentException e) {
+					program.failed = true;
+				}
+			}
+			return (program.generated == null) ? null : program;
+		}
+	}
+
+	/**
+	 * Applies <code>optimizer</code>, treating the bias and unused inputs as constants.
+	 * @param net
+	 * @param channels input channel of each network input
+	 * @return the optimized network, or <code>net</code> if there is no optimizer
+	 */
+	private CompiledNet optimize(CompiledNet net, int[] channels) {
+		if (optimizer == null) return net;
+		boolean[] constantInputs = new boolean[channels.length];
+		double[] inputValues = new double[channels.length];
+		for (int i = 0; i < channels.length; i++) {
+			if (channels[i] == INPUT_BIAS) {
+				constantInputs[i] = true;
+				inputValues[i] = BIAS;
+			} else if (channels[i] == INPUT_NONE) {
+				constantInputs[i] = true;
+			}
+		}
+		return optimizer.optimize(net, constantInputs, inputValues);
+	}
+
+	/**
+	 * @param channels input channel of each network input
+	 * @return input plane of each network input
+	 */
+	private double[][] getStimuli(int[] channels) {
+		double[][] stimuli = new double[channels.length][];
+		for (int i = 0; i < channels.length; i++)
+			stimuli[i] = (channels[i] == INPUT_NONE) ? zeroPlane : inputPlanes[channels[i]];
+		return stimuli;
+	}
+
+	/**
+	 * Renders every row block of the image with <code>renderer</code>, on the calling thread or
+	 * spread over the threads of <code>executor</code>, which take blocks in turn until none are
+	 * left.
+	 */
+	private <P> void renderBlocks(final BlockRenderer<P> renderer) {
+		renderBlocks(renderer, null, null);
+	}
+
+	/**
+	 * Given a <code>listener</code>, renders the row blocks in order on the calling thread
+	 * instead, handing each to the listener, until it stops the render.
+	 * @return false if <code>listener</code> stopped the render
+	 */
+	private <P> boolean renderBlocks(final BlockRenderer<P> renderer, GrayscaleImage image, BlockListener listener) {
+		final int total = width * height;
+		final int block = blockSize;
+		final int blocks = (total + block - 1) / block;
+		if (listener != null) {
+			P planes = renderer.newPlanes(block);
+			for (int offset = 0; offset < total; offset += block) {
+				int length = Math.min(block, total - offset);
+				renderer.render(planes, offset, length);
+				if (!listener.rendered(image, offset, length)) return false;
+			}
+			return true;
+		}
+		ExecutorService pool;
+		int workers;
+		synchronized (this) {
+			pool = executor;
+			workers = Math.min(threads, blocks);
+		}
+		if (pool == null || blocks == 1) {
+			P planes = renderer.newPlanes(block);
+			for (int offset = 0; offset < total; offset += block)
+				renderer.render(planes, offset, Math.min(block, total - offset));
+			return true;
+		}
+
+		final AtomicInteger next = new AtomicInteger();
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		for (int t = workers; t > 0; t--) {
+			tasks.add(new Callable<Object>() {
+				public Object call() {
+					P planes = renderer.newPlanes(block);
+					for (int b = next.getAndIncrement(); b < blocks; b = next.getAndIncrement()) {
+						int offset = b * block;
+						renderer.render(planes, offset, Math.min(block, total - offset));
+					}
+					return null;
+				}
+			});
+		}
+		try {
+			for (Future<Object> f : pool.invokeAll(tasks))
+				f.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while rendering", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+			throw new IllegalStateException("can not render", e.getCause());
+		}
+		return true;
+	}
+
+	private void renderGenerated(final Program program, final byte[] pixels) {
+		final double[][] stimuli = getStimuli(program.channels);
+		renderBlocks(new BlockRenderer<double[][]>() {
+			public double[][] newPlanes(int length) {
+				return new double[program.outputDimension][length];
+			}
+			public void render(double[][] outputs, int offset, int length) {
+				program.generated.activate(stimuli, offset, outputs, length);
+				double[] out = outputs[program.output];
+				for (int p = 0; p < length; p++)
+					pixels[offset + p] = (byte) toGray(out[p]);
+			}
+		});
+	}
+
+	private void renderPixels(CompiledNet net, int[] channels, int output, byte[] pixels) {
+		double[] stimuli = new double[net.getInputDimension()];
+		double[] result = new double[net.getOutputDimension()];
+		for (int i = 0; i < channels.length; i++) {
+			if (channels[i] == INPUT_BIAS) stimuli[i] = BIAS;
+		}
+		for (int y = 0, p = 0; y < height; y++) {
+			for (int x = 0; x < width; x++, p++) {
+				for (int i = 0; i < channels.length; i++) {
+					switch (channels[i]) {
+					case INPUT_X: stimuli[i] = xInputs[x]; break;
+					case INPUT_Y: stimuli[i] = yInputs[y]; break;
+					case INPUT_D: stimuli[i] = dInputs[p]; break;
+					}
+				}
+				net.activate(stimuli, result);
+				pixels[p] = (byte) toGray(result[output]);
+			}
+		}
+	}
+
+	/**
+	 * Plane rendering in <code>float</code>.
+	 */
+	private void renderFloat(final CompiledNet net, int[] channels, int output, final byte[] pixels) {
+		if (floatInputPlanes == null) {
+			float[][] planes = new float[inputPlanes.length + 1][];
+			for (int c = 0; c < inputPlanes.length; c++)
+				planes[c] = Precision.toFloat(inputPlanes[c]);
+			planes[inputPlanes.length] = new float[width * height];
+			floatInputPlanes = planes;
+		}
+		final float[][] stimuli = new float[channels.length][];
+		for (int i = 0; i < channels.length; i++)
+			stimuli[i] = floatInputPlanes[(channels[i] == INPUT_NONE) ? inputPlanes.length : channels[i]];
+		final int outNeuron = net.getOutputIndex(output);
+		renderBlocks(new BlockRenderer<float[][]>() {
+			public float[][] newPlanes(int length) {
+				return net.newFloatPlanes(length);
+			}
+			public void render(float[][] planes, int offset, int length) {
+				net.activate(stimuli, offset, planes, length);
+				float[] out = planes[outNeuron];
+				for (int p = 0; p < length; p++)
+					pixels[offset + p] = (byte) toGray(out[p]);
+			}
+		});
+	}
+
+	/**
+	 * Plane rendering in 16.16 fixed point.
+	 */
+	private void renderFixed(final CompiledNet net, int[] channels, int output, final byte[] pixels) {
+		if (fixedInputPlanes == null) {
+			int[][] planes = new int[inputPlanes.length + 1][];
+			for (int c = 0; c < inputPlanes.length; c++)
+				planes[c] = Precision.toFixed(inputPlanes[c]);
+			planes[inputPlanes.length] = new int[width * height];
+			fixedInputPlanes = planes;
+		}
+		final int[][] stimuli = new int[channels.length][];
+		for (int i = 0; i < channels.length; i++)
+			stimuli[i] = fixedInputPlanes[(channels[i] == INPUT_NONE) ? inputPlanes.length : channels[i]];
+		final int outNeuron = net.getOutputIndex(output);
+		renderBlocks(new BlockRenderer<int[][]>() {
+			public int[][] newPlanes(int length) {
+				return net.newFixedPlanes(length);
+			}
+			public void render(int[][] planes, int offset, int length) {
+				net.activateFixed(stimuli, offset, planes, length);
+				int[] out = planes[outNeuron];
+				for (int p = 0; p < length; p++)
+					pixels[offset + p] = (byte) toGray(Precision.fromFixed(out[p]));
+			}
+		});
+	}
+
+	/**
+	 * @return false if <code>listener</code> stopped the render
+	 */
+	private boolean renderPlanes(final CompiledNet net, int[] channels, int output, GrayscaleImage image, final Reuse reuse, BlockListener listener) {
+		net.setPlaneKernels(planeKernels);
+		if (separable) return renderSeparable(net, channels, output, image, reuse, listener);
+		final byte[] pixels = image.getPixels();
+		final double[][] stimuli = getStimuli(channels);
+		final int outNeuron = net.getOutputIndex(output);
+		return renderBlocks(new BlockRenderer<double[][]>() {
+			public double[][] newPlanes(int length) {
+				return net.newPlanes(length);
+			}
+			public void render(double[][] planes, int offset, int length) {
+				if (reuse == null) net.activate(stimuli, offset, planes, length);
+				else {
+					reuse.attach(planes, offset / blockSize, length);
+					net.activate(stimuli, offset, planes, length, reuse.computed);
+				}
+				double[] out = planes[outNeuron];
+				for (int p = 0; p < length; p++)
+					pixels[offset + p] = (byte) toGray(out[p]);
+			}
+		}, image, listener);
+	}
+
+	/**
+	 * Renders the image as a quadtree of tiles: a tile whose output bounds, from
+	 * <code>CompiledNet.activateBounds()</code>, fit in one gray level is filled with it, a tile
+	 * of at most <code>ADAPTIVE_TILE_SIZE</code> pixels on each side is evaluated pixel by
+	 * pixel, and any other tile is split into quarters.
+	 */
+	private void renderAdaptive(CompiledNet net, int[] channels, int output, byte[] pixels) {
+		TileRenderer tiles = new TileRenderer(net, channels, output, pixels);
+		tiles.render(0, 0, width, height);
+		synchronized (this) {
+			adaptivePixels += pixels.length;
+			evaluatedPixels += tiles.evaluated;
+			tileBounds += tiles.bounded;
+		}
+	}
+
+	/**
+	 * Renders the tiles of one image for <code>renderAdaptive()</code>.
+	 */
+	private class TileRenderer {
+		private final CompiledNet net;
+		private final int[] channels;
+		private final int outNeuron;
+		private final byte[] pixels;
+		private final double[] lo;
+		private final double[] hi;
+		private final double[] low;
+		private final double[] high;
+		private final double[][] stimuli;
+		private final double[][] planes;
+		private long evaluated = 0;
+		private long bounded = 0;
+
+		private TileRenderer(CompiledNet net, int[] channels, int output, byte[] pixels) {
+			this.net = net;
+			this.channels = channels;
+			this.pixels = pixels;
+			outNeuron = net.getOutputIndex(output);
+			lo = new double[channels.length];
+			hi = new double[channels.length];
+			low = new double[net.getNeuronCount()];
+			high = new double[net.getNeuronCount()];
+			stimuli = new double[channels.length][ADAPTIVE_TILE_SIZE * ADAPTIVE_TILE_SIZE];
+			planes = net.newPlanes(ADAPTIVE_TILE_SIZE * ADAPTIVE_TILE_SIZE);
+			net.setPlaneKernels(planeKernels);
+		}
+
+		/**
+		 * Renders the tile of columns [x0, x1) and rows [y0, y1).
+		 */
+		private void render(int x0, int y0, int x1, int y1) {
+			int gray = bound(x0, y0, x1, y1);
+			if (gray >= 0) {
+				for (int y = y0; y < y1; y++)
+					Arrays.fill(pixels, y * width + x0, y * width + x1, (byte) gray);
+			} else if (x1 - x0 <= ADAPTIVE_TILE_SIZE && y1 - y0 <= ADAPTIVE_TILE_SIZE) {
+				evaluate(x0, y0, x1, y1);
+			} else {
+				int xm = (x1 - x0 > ADAPTIVE_TILE_SIZE) ? (x0 + x1) >>> 1 : x1;
+				int ym = (y1 - y0 > ADAPTIVE_TILE_SIZE) ? (y0 + y1) >>> 1 : y1;
+				render(x0, y0, xm, ym);
+				if (xm < x1) render(xm, y0, x1, ym);
+				if (ym < y1) render(x0, ym, xm, y1);
+				if (xm < x1 && ym < y1) render(xm, ym, x1, y1);
+			}
+		}
+
+		/**
+		 * @return the gray level of every pixel of the tile, or -1 if it is not bounded to one
+		 */
+		private int bound(int x0, int y0, int x1, int y1) {
+			// d grows with |x| and |y|, so it is least and greatest at the pixels nearest to and
+			// farthest from the center
+			int xNear = x0, xFar = x0, yNear = y0, yFar = y0;
+			for (int x = x0; x < x1; x++) {
+				if (Math.abs(xInputs[x]) < Math.abs(xInputs[xNear])) xNear = x;
+				if (Math.abs(xInputs[x]) > Math.abs(xInputs[xFar])) xFar = x;
+			}
+			for (int y = y0; y < y1; y++) {
+				if (Math.abs(yInputs[y]) < Math.abs(yInputs[yNear])) yNear = y;
+				if (Math.abs(yInputs[y]) > Math.abs(yInputs[yFar])) yFar = y;
+			}
+			for (int i = 0; i < channels.length; i++) {
+				switch (channels[i]) {
+				case INPUT_X:
+					lo[i] = Math.min(xInputs[x0], xInputs[x1 - 1]);
+					hi[i] = Math.max(xInputs[x0], xInputs[x1 - 1]);
+					break;
+				case INPUT_Y:
+					lo[i] = Math.min(yInputs[y0], yInputs[y1 - 1]);
+					hi[i] = Math.max(yInputs[y0], yInputs[y1 - 1]);
+					break;
+				case INPUT_D:
+					lo[i] = dInputs[yNear * width + xNear];
+					hi[i] = dInputs[yFar * width + xFar];
+					break;
+				case INPUT_BIAS:
+					lo[i] = hi[i] = BIAS;
+					break;
+				default:
+					lo[i] = hi[i] = 0.0;
+				}
+			}
+			net.activateBounds(lo, hi, low, high);
+			bounded++;
+			return toGray(low[outNeuron], high[outNeuron]);
+		}
+
+		/**
+		 * Evaluates every pixel of a tile of at most <code>ADAPTIVE_TILE_SIZE</code> pixels on
+		 * each side.
+		 */
+		private void evaluate(int x0, int y0, int x1, int y1) {
+			int w = x1 - x0;
+			int length = w * (y1 - y0);
+			for (int i = 0; i < channels.length; i++) {
+				double[] source = (channels[i] == INPUT_NONE) ? zeroPlane : inputPlanes[channels[i]];
+				for (int y = y0, p = 0; y < y1; y++, p += w)
+					System.arraycopy(source, y * width + x0, stimuli[i], p, w);
+			}
+			net.activate(stimuli, 0, planes, length);
+			double[] out = planes[outNeuron];
+			for (int y = y0, p = 0; y < y1; y++) {
+				for (int x = x0; x < x1; x++, p++)
+					pixels[y * width + x] = (byte) toGray(out[p]);
+			}
+			evaluated += length;
+		}
+	}
+
+	/**
+	 * Plane rendering with x-, y- and d-only neurons evaluated over columns, rows and distinct
+	 * radii rather than pixels.
+	 * @return false if <code>listener</code> stopped the render
+	 */
+	private boolean renderSeparable(final CompiledNet net, int[] channels, int output, GrayscaleImage image, final Reuse reuse, BlockListener listener) {
+		final byte[] pixels = image.getPixels();
+		final int numNeurons = net.getNeuronCount();
+		final int[] deps = net.getDependencies(getGroups(channels));
+
+		// only neurons combining several inputs, and the output, are worth reusing
+		final int outNeuron = net.getOutputIndex(output);
+		boolean[] many = new boolean[numNeurons];
+		for (int i = 0; i < numNeurons; i++)
+			many[i] = (deps[i] == CompiledNet.DEPENDS_MANY);
+		if (reuse != null) {
+			boolean[] kept = many.clone();
+			kept[outNeuron] = true;
+			reuse.restrict(kept);
+		}
+
+		final boolean[] general = new boolean[numNeurons];
+		for (int i = 0; i < numNeurons; i++)
+			general[i] = many[i] && (reuse == null || reuse.computed[i]);
+		final boolean[] broadcast = net.getSources(general);
+		broadcast[outNeuron] |= (reuse == null || reuse.computed[outNeuron]);
+		for (int i = 0; i < numNeurons; i++)
+			broadcast[i] &= !many[i];
+		final double[][][] groupPlanes = evaluateGroups(net, channels, deps, broadcast);
+
+		// evaluate the remaining neurons per block, broadcasting their single-group sources
+		final double[][] stimuli = getStimuli(channels);
+		return renderBlocks(new BlockRenderer<double[][]>() {
+			public double[][] newPlanes(int length) {
+				return net.newPlanes(length);
+			}
+			public void render(double[][] planes, int offset, int length) {
+				if (reuse != null) reuse.attach(planes, offset / blockSize, length);
+				broadcast(planes, broadcast, deps, groupPlanes, offset, length);
+				net.activate(stimuli, offset, planes, length, general);
+				double[] out = planes[outNeuron];
+				for (int p = 0; p < length; p++)
+					pixels[offset + p] = (byte) toGray(out[p]);
+			}
+		}, image, listener);
+	}
+
+	/**
+	 * @param channels input channel of each network input
+	 * @return input group of each network input for <code>CompiledNet.getDependencies()</code>
+	 */
+	private static int[] getGroups(int[] channels) {
+		int[] groups = new int[channels.length];
+		for (int i = 0; i < channels.length; i++)
+			groups[i] = (channels[i] == INPUT_X || channels[i] == INPUT_Y || channels[i] == INPUT_D) ? channels[i] : CompiledNet.DEPENDS_NONE;
+		return groups;
+	}
+
+	/**
+	 * Evaluates each group of single-group neurons over its own domain: columns, rows, radii,
+	 * or a single sample.
+	 * @param broadcast neurons whose group is needed
+	 * @return neuron planes of each input group, and at <code>GROUP_NONE</code> of the neurons
+	 * depending on no input; null for groups that are not needed
+	 */
+	private double[][][] evaluateGroups(CompiledNet net, int[] channels, int[] deps, boolean[] broadcast) {
+		int numNeurons = net.getNeuronCount();
+		double[][][] groupPlanes = new double[GROUP_NONE + 1][][];
+		for (int g = CompiledNet.DEPENDS_NONE; g <= INPUT_D; g++) {
+			boolean needed = false;
+			boolean[] mask = new boolean[numNeurons];
+			for (int i = 0; i < numNeurons; i++) {
+				mask[i] = (deps[i] == g || deps[i] == CompiledNet.DEPENDS_NONE);
+				needed |= (deps[i] == g && broadcast[i]);
+			}
+			if (!needed) continue;
+			double[] domain = (g == INPUT_X) ? xInputs : (g == INPUT_Y) ? yInputs : (g == INPUT_D) ? radii : new double[1];
+			double[][] stimuli = new double[channels.length][];
+			for (int i = 0; i < channels.length; i++) {
+				if (channels[i] == g) stimuli[i] = domain;
+				else if (channels[i] == INPUT_BIAS) {
+					stimuli[i] = new double[domain.length];
+					Arrays.fill(stimuli[i], BIAS);
+				} else stimuli[i] = new double[domain.length];
+			}
+			double[][] planes = net.newPlanes(domain.length);
+			net.activate(stimuli, 0, planes, domain.length, mask);
+			groupPlanes[(g == CompiledNet.DEPENDS_NONE) ? GROUP_NONE : g] = planes;
+		}
+		return groupPlanes;
+	}
+
+	/**
+	 * Fills the planes of the <code>broadcast</code> neurons for one block from the planes of
+	 * their groups.
+	 */
+	private void broadcast(double[][] planes, boolean[] broadcast, int[] deps, double[][][] groupPlanes, int offset, int length) {
+		for (int i = 0; i < planes.length; i++) {
+			if (!broadcast[i]) continue;
+			double[] plane = planes[i];
+			switch (deps[i]) {
+			case INPUT_X:
+				for (int p = 0; p < length; p += width)
+					System.arraycopy(groupPlanes[INPUT_X][i], 0, plane, p, width);
+				break;
+			case INPUT_Y:
+				for (int p = 0, y = offset / width; p < length; p += width, y++)
+					Arrays.fill(plane, p, p + width, groupPlanes[INPUT_Y][i][y]);
+				break;
+			case INPUT_D:
+				double[] values = groupPlanes[INPUT_D][i];
+				for (int p = 0; p < length; p++)
+					plane[p] = values[radiusIndex[offset + p]];
+				break;
+			default:
+				Arrays.fill(plane, 0, length, groupPlanes[GROUP_NONE][i][0]);
+			}
+		}
+	}
+
+	/**
+	 * Renders chromosomes of the same topology and inputs in lockstep, evaluating the neurons
+	 * they share once, separably if <code>separable</code> is set.
+	 */
+	private void renderLockstep(List<Prepared> batch) {
+		final int size = batch.size();
+		final CompiledNet[] nets = new CompiledNet[size];
+		final byte[][] pixels = new byte[size][];
+		for (int n = 0; n < size; n++) {
+			nets[n] = batch.get(n).net;
+			nets[n].setPlaneKernels(planeKernels);
+			pixels[n] = batch.get(n).pixels;
+		}
+		final boolean[] shared = CompiledNet.getShared(nets);
+		final int numNeurons = shared.length;
+		Prepared first = batch.get(0);
+		final int outNeuron = first.net.getOutputIndex(first.output);
+		final int outSource = shared[outNeuron] ? 0 : -1;
+		final double[][] stimuli = getStimuli(first.channels);
+
+		final boolean[] general;
+		final int[] deps;
+		final boolean[][] broadcast = new boolean[size][];
+		final double[][][][] groupPlanes = new double[size][][][];
+		if (separable) {
+			deps = first.net.getDependencies(getGroups(first.channels));
+			general = new boolean[numNeurons];
+			for (int i = 0; i < numNeurons; i++)
+				general[i] = (deps[i] == CompiledNet.DEPENDS_MANY);
+			boolean[] sources = first.net.getSources(general);
+			sources[outNeuron] = true;
+			for (int n = 0; n < size; n++) {
+				// the first network broadcasts the shared neurons for all
+				broadcast[n] = new boolean[numNeurons];
+				for (int i = 0; i < numNeurons; i++)
+					broadcast[n][i] = sources[i] && !general[i] && (n == 0 || !shared[i]);
+				groupPlanes[n] = evaluateGroups(nets[n], first.channels, deps, broadcast[n]);
+			}
+			for (Prepared job : batch) {
+				if (job.reuse == null) continue;
+				boolean[] kept = general.clone();
+				kept[outNeuron] = true;
+				job.reuse.restrict(kept);
+			}
+		} else {
+			deps = null;
+			general = null;
+		}
+
+		renderBlocks(new BlockRenderer<double[][][]>() {
+			public double[][][] newPlanes(int length) {
+				double[][][] planes = new double[size][][];
+				for (int n = 0; n < size; n++)
+					planes[n] = nets[n].newPlanes(length);
+				return planes;
+			}
+			public void render(double[][][] planes, int offset, int length) {
+				if (deps != null) {
+					for (int n = 0; n < size; n++)
+						broadcast(planes[n], broadcast[n], deps, groupPlanes[n], offset, length);
+				}
+				CompiledNet.activate(nets, shared, stimuli, offset, planes, length, general);
+				for (int n = 0; n < size; n++) {
+					double[] out = planes[(outSource < 0) ? n : outSource][outNeuron];
+					byte[] image = pixels[n];
+					for (int p = 0; p < length; p++)
+						image[offset + p] = (byte) toGray(out[p]);
+				}
+			}
+		});
+		for (Prepared job : batch) {
+			if (job.reuse != null) store(job.reuse);
+		}
+	}
+}
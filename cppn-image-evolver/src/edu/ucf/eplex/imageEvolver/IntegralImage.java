@@ -0,0 +1,191 @@
+/**
+ * Copyright (C) 2010 Brian Woolley
+ *
+ * This file is part of the octopusArm simulator.
+ *
+ * The octopusArm simulator is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ */
+package edu.ucf.eplex.imageEvolver;
+
+/**
+ * Summed-area tables of a grayscale image: entry <code>(x, y)</code> holds the sum of the gray
+ * levels, and of their squares, of the pixels above and to the left of pixel
+ * <code>(x, y)</code>. One pass over the image builds them; after that the sum, mean or
+ * variance of any rectangle takes four lookups.
+ * <p>
+ * A third table, of the products of the gray levels of the image and of another image, is
+ * computed on demand for their covariance.
+ * <p>
+ * The tables are kept from image to image, so computing those of another image of the same
+ * size allocates nothing.
+ *
+ * @see Region
+ */
+public class IntegralImage {
+
+	private int width = 0;
+	private int height = 0;
+
+	/** <code>(width + 1) * (height + 1)</code> entries, the first row and column 0 */
+	private long[] sums = new long[0];
+	private long[] squares = new long[0];
+	private long[] products = new long[0];
+
+	/**
+	 * Creates empty tables, to be computed.
+	 */
+	public IntegralImage() {
+	}
+
+	/**
+	 * @param image
+	 */
+	public IntegralImage(GrayscaleImage image) {
+		compute(image);
+	}
+
+	/**
+	 * Replaces the tables with those of <code>image</code>.
+	 * @param image
+	 * @return this
+	 */
+	public IntegralImage compute(GrayscaleImage image) {
+		int w = image.getWidth();
+		int h = image.getHeight();
+		int scan = w + 1;
+		if (w != width || h != height) {
+			// a new shape moves the zero first row and column
+			sums = new long[scan * (h + 1)];
+			squares = new long[scan * (h + 1)];
+			products = new long[0];
+		}
+		width = w;
+		height = h;
+		byte[] pixels = image.getPixels();
+		for (int y = 0; y < h; y++) {
+			long rowSum = 0, rowSquares = 0;
+			int above = y * scan;
+			int row = above + scan;
+			for (int x = 0; x < w; x++) {
+				int gray = pixels[y * w + x] & 0xFF;
+				rowSum += gray;
+				rowSquares += gray * gray;
+				sums[row + x + 1] = sums[above + x + 1] + rowSum;
+				squares[row + x + 1] = squares[above + x + 1] + rowSquares;
+			}
+		}
+		return this;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Replaces the table of products with that of the gray levels of <code>image</code>, the
+	 * image of the other tables, and of <code>other</code>.
+	 * @param image the image last computed
+	 * @param other an image of the same size
+	 * @return this
+	 */
+	public IntegralImage computeProducts(GrayscaleImage image, GrayscaleImage other) {
+		int w = image.getWidth();
+		int h = image.getHeight();
+		if (w != width || h != height || other.getWidth() != w || other.getHeight() != h)
+			throw new IllegalArgumentException("images must be " + width + "x" + height);
+		int scan = w + 1;
+		if (products.length != sums.length) products = new long[sums.length];
+		byte[] x = image.getPixels();
+		byte[] y = other.getPixels();
+		for (int j = 0; j < h; j++) {
+			long rowSum = 0;
+			int above = j * scan;
+			int row = above + scan;
+			for (int i = 0; i < w; i++) {
+				int p = j * w + i;
+				rowSum += (x[p] & 0xFF) * (y[p] & 0xFF);
+				products[row + i + 1] = products[above + i + 1] + rowSum;
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * @return the sum of the products of the gray levels of the two images of
+	 * <code>computeProducts</code>, over the <code>w</code> by <code>h</code> pixels from
+	 * <code>(x, y)</code>
+	 */
+	public long sumOfProducts(int x, int y, int w, int h) {
+		return lookup(products, x, y, w, h);
+	}
+
+	/**
+	 * @return the sum of the gray levels of the <code>w</code> by <code>h</code> pixels from
+	 * <code>(x, y)</code>
+	 */
+	public long sum(int x, int y, int w, int h) {
+		return lookup(sums, x, y, w, h);
+	}
+
+	/**
+	 * @return the sum of the squared gray levels of the <code>w</code> by <code>h</code> pixels
+	 * from <code>(x, y)</code>
+	 */
+	public long sumOfSquares(int x, int y, int w, int h) {
+		return lookup(squares, x, y, w, h);
+	}
+
+	/**
+	 * @return the mean gray level of the <code>w</code> by <code>h</code> pixels from
+	 * <code>(x, y)</code>
+	 */
+	public double mean(int x, int y, int w, int h) {
+		return (double) sum(x, y, w, h) / (w * h);
+	}
+
+	/**
+	 * @return the population variance of the gray levels of the <code>w</code> by
+	 * <code>h</code> pixels from <code>(x, y)</code>
+	 */
+	public double variance(int x, int y, int w, int h) {
+		double area = w * h;
+		double mean = sum(x, y, w, h) / area;
+		return Math.max(0.0, sumOfSquares(x, y, w, h) / area - mean * mean);
+	}
+
+	/** the tables themselves, <code>width + 1</code> entries a row, for scans of windows */
+	long[] getSums() {
+		return sums;
+	}
+
+	long[] getSquares() {
+		return squares;
+	}
+
+	long[] getProducts() {
+		return products;
+	}
+
+	private long lookup(long[] table, int x, int y, int w, int h) {
+		if (x < 0 || y < 0 || w < 0 || h < 0 || x + w > width || y + h > height)
+			throw new IllegalArgumentException(w + "x" + h + " at (" + x + ", " + y + ") is outside " + width + "x" + height);
+		int scan = width + 1;
+		int top = y * scan + x;
+		int bottom = (y + h) * scan + x;
+		return table[bottom + w] - table[bottom] - table[top + w] + table[top];
+	}
+}
@@ -0,0 +1,175 @@
+/**
+ * Copyright (C) 2010 Brian Woolley
+ *
+ * This file is part of the octopusArm simulator.
+ *
+ * The octopusArm simulator is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ */
+package edu.ucf.eplex.imageEvolver;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Neuron planes shared by every chromosome of a population, within a generation and across
+ * generations. A plane is keyed by the structural signature of its neuron (see
+ * <code>CompiledNet.getSignatures()</code>), so any network containing the same upstream
+ * subgraph with the same weights, whether inherited by cloning or crossover or reached
+ * independently, reuses it; a plane is stored as one array per row block.
+ * <p>
+ * Once <code>retain()</code> has named the chromosomes that are parents of others, only the
+ * planes of those are stored, so offspring without offspring of their own render without the
+ * cost of storing. The total size of the stored planes is bounded by <code>capacity</code>
+ * bytes; when the cache is full the least recently used planes are evicted.
+ */
+public class PlaneCache {
+
+	/**
+	 * Plane of one neuron.
+	 */
+	private static class Entry {
+		private final double[][] blocks;
+		private final long bytes;
+
+		private Entry(double[][] blocks, long bytes) {
+			this.blocks = blocks;
+			this.bytes = bytes;
+		}
+	}
+
+	private final long capacity;
+	private long size = 0;
+
+	private final Map<Long, Entry> entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true);
+
+	private Set<Long> wanted = null;
+
+	private long renders = 0;
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	/**
+	 * @param capacity maximum number of bytes of planes to keep
+	 */
+	public PlaneCache(long capacity) {
+		if (capacity < 0) throw new IllegalArgumentException("capacity must be >= 0");
+		this.capacity = capacity;
+	}
+
+	/**
+	 * @return maximum number of bytes of planes to keep
+	 */
+	public long getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @param signature neuron signature
+	 * @return per-block plane of the neuron, or null if it is not cached
+	 */
+	public synchronized double[][] get(long signature) {
+		Entry entry = entries.get(new Long(signature));
+		return (entry == null) ? null : entry.blocks;
+	}
+
+	/**
+	 * @param id chromosome ID
+	 * @return true if the planes of chromosome <code>id</code> are to be stored
+	 */
+	public synchronized boolean wants(Long id) {
+		return wanted == null || wanted.contains(id);
+	}
+
+	/**
+	 * Stores the plane of a neuron, evicting others as needed. Planes larger than the capacity
+	 * are not stored.
+	 * @param signature neuron signature
+	 * @param blocks per-block plane
+	 * @param bytes size of <code>blocks</code>
+	 */
+	public synchronized void put(long signature, double[][] blocks, long bytes) {
+		Long key = new Long(signature);
+		Entry old = entries.remove(key);
+		if (old != null) size -= old.bytes;
+		if (bytes > capacity) return;
+		for (Iterator<Entry> it = entries.values().iterator(); size > capacity - bytes && it.hasNext();) {
+			Entry entry = it.next();
+			it.remove();
+			size -= entry.bytes;
+			evictions++;
+		}
+		entries.put(key, new Entry(blocks, bytes));
+		size += bytes;
+	}
+
+	/**
+	 * From now on stores the planes of the chromosomes in <code>ids</code> only. Called before
+	 * each generation with the IDs of the parents of the chromosomes to be rendered.
+	 * @param ids
+	 */
+	public synchronized void retain(Collection<Long> ids) {
+		wanted = new HashSet<Long>(ids);
+	}
+
+	/**
+	 * Drops every plane, and stores the planes of all chromosomes from now on.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		size = 0;
+		wanted = null;
+	}
+
+	/**
+	 * Counts a render.
+	 * @param hits number of neurons whose planes were found
+	 * @param misses number of neurons that were evaluated
+	 */
+	synchronized void count(int hits, int misses) {
+		renders++;
+		this.hits += hits;
+		this.misses += misses;
+	}
+
+	/**
+	 * @return number of neuron planes found since the last <code>reset()</code>
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return number of neuron planes evaluated since the last <code>reset()</code>
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Resets the counts.
+	 */
+	public synchronized void reset() {
+		renders = hits = misses = evictions = 0;
+	}
+
+	public synchronized String toString() {
+		return "plane cache: " + renders + " renders, " + hits + " hits, " + misses + " misses; "
+				+ entries.size() + " planes, " + (size >> 20) + " of " + (capacity >> 20) + " MB, "
+				+ evictions + " evicted";
+	}
+}
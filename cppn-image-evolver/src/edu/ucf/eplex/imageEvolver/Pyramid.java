@@ -0,0 +1,217 @@
+/**
+ * Copyright (C) 2010 Brian Woolley
+ *
+ * This file is part of the octopusArm simulator.
+ *
+ * The octopusArm simulator is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ */
+package edu.ucf.eplex.imageEvolver;
+
+/**
+ * An image pyramid of a grayscale image: level 0 is the image itself and each further level
+ * halves the one before it, with a 2x2 box filter or a 5-tap binomial approximation of a
+ * Gaussian, edges clamped. The levels are laid end to end in a single one row image, level 0
+ * first, so they can be compared as one feature while <code>getOffset</code> tells them
+ * apart.
+ * <p>
+ * A pyramid keeps its buffers from image to image, so building that of another image of the
+ * same size allocates nothing. It is not thread safe; each thread builds its own.
+ */
+public class Pyramid {
+
+	/**
+	 * The filter reducing one level to the next.
+	 */
+	public enum Filter {
+		/** the rounded mean of each 2x2 block */
+		BOX("box"),
+		/** the rounded [1 4 6 4 1] x [1 4 6 4 1] / 256 blur at every other pixel */
+		GAUSSIAN("gaussian");
+
+		private final String name;
+
+		private Filter(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * @param name <code>box</code> or <code>gaussian</code>
+		 * @return the filter named <code>name</code>
+		 * @throws IllegalArgumentException if there is no such filter
+		 */
+		public static Filter get(String name) {
+			for (Filter f : values())
+				if (f.name.equalsIgnoreCase(name.trim()))
+					return f;
+			throw new IllegalArgumentException("unknown pyramid filter: " + name);
+		}
+
+		/**
+		 * @see java.lang.Enum#toString()
+		 */
+		public String toString() {
+			return name;
+		}
+	}
+
+	private static final int[] GAUSSIAN_TAPS = { 1, 4, 6, 4, 1 };
+
+	private final Filter filter;
+	private final int maxLevels;
+
+	private int width = 0;
+	private int height = 0;
+	private int[] widths = new int[0];
+	private int[] heights = new int[0];
+
+	/** first pixel of each level, and one past the last of the last level */
+	private int[] offsets = new int[1];
+
+	private GrayscaleImage levels = null;
+
+	/** horizontally filtered rows of a level, for the Gaussian */
+	private int[] scratch = new int[0];
+
+	/**
+	 * @param filter
+	 * @param levels most levels to build, counting the image itself; fewer are built of
+	 * images too small to halve
+	 */
+	public Pyramid(Filter filter, int levels) {
+		if (levels < 1) throw new IllegalArgumentException("pyramid must have at least one level");
+		this.filter = filter;
+		this.maxLevels = levels;
+	}
+
+	public Filter getFilter() {
+		return filter;
+	}
+
+	/**
+	 * @return number of levels of the last pyramid built
+	 */
+	public int getLevels() {
+		return offsets.length - 1;
+	}
+
+	/**
+	 * @param level
+	 * @return index of the first pixel of <code>level</code> in <code>getImage()</code>
+	 */
+	public int getOffset(int level) {
+		return offsets[level];
+	}
+
+	/**
+	 * @param level
+	 * @return number of pixels of <code>level</code>
+	 */
+	public int getSize(int level) {
+		return offsets[level + 1] - offsets[level];
+	}
+
+	/**
+	 * @return the levels of the last pyramid built, end to end
+	 */
+	public GrayscaleImage getImage() {
+		return levels;
+	}
+
+	/**
+	 * Replaces the pyramid with that of <code>image</code>.
+	 * @param image
+	 * @return the levels, end to end; reused by the next build of an image of the same size
+	 */
+	public GrayscaleImage build(GrayscaleImage image) {
+		if (levels == null || image.getWidth() != width || image.getHeight() != height)
+			layout(image.getWidth(), image.getHeight());
+		byte[] pixels = levels.getPixels();
+		System.arraycopy(image.getPixels(), 0, pixels, 0, offsets[1]);
+		for (int l = 1; l < widths.length; l++) {
+			if (filter == Filter.BOX) box(pixels, offsets[l - 1], widths[l - 1], heights[l - 1], offsets[l], widths[l], heights[l]);
+			else gaussian(pixels, offsets[l - 1], widths[l - 1], heights[l - 1], offsets[l], widths[l], heights[l]);
+		}
+		return levels;
+	}
+
+	/**
+	 * Sizes the levels and buffers for a <code>w</code> by <code>h</code> image.
+	 */
+	private void layout(int w, int h) {
+		int count = 1;
+		for (int lw = w, lh = h; count < maxLevels && lw >= 2 && lh >= 2; lw /= 2, lh /= 2)
+			count++;
+		widths = new int[count];
+		heights = new int[count];
+		offsets = new int[count + 1];
+		widths[0] = w;
+		heights[0] = h;
+		for (int l = 1; l < count; l++) {
+			widths[l] = widths[l - 1] / 2;
+			heights[l] = heights[l - 1] / 2;
+		}
+		for (int l = 0; l < count; l++)
+			offsets[l + 1] = offsets[l] + widths[l] * heights[l];
+		width = w;
+		height = h;
+		levels = new GrayscaleImage(offsets[count], 1);
+		scratch = (count > 1) ? new int[widths[1] * h] : new int[0];
+	}
+
+	private static void box(byte[] p, int src, int sw, int sh, int dst, int dw, int dh) {
+		for (int y = 0; y < dh; y++) {
+			int top = src + 2 * y * sw;
+			int bottom = top + sw;
+			for (int x = 0; x < dw; x++) {
+				int sum = (p[top + 2 * x] & 0xFF) + (p[top + 2 * x + 1] & 0xFF)
+						+ (p[bottom + 2 * x] & 0xFF) + (p[bottom + 2 * x + 1] & 0xFF);
+				p[dst + y * dw + x] = (byte) ((sum + 2) >> 2);
+			}
+		}
+	}
+
+	private void gaussian(byte[] p, int src, int sw, int sh, int dst, int dw, int dh) {
+		int[] rows = scratch;
+		for (int y = 0; y < sh; y++) {
+			int row = src + y * sw;
+			int out = y * dw;
+			for (int x = 0; x < dw; x++) {
+				int c = 2 * x;
+				if (c >= 2 && c + 2 < sw) {
+					int i = row + c;
+					rows[out + x] = (p[i - 2] & 0xFF) + 4 * (p[i - 1] & 0xFF) + 6 * (p[i] & 0xFF)
+							+ 4 * (p[i + 1] & 0xFF) + (p[i + 2] & 0xFF);
+				}
+				else {
+					int sum = 0;
+					for (int t = 0; t < GAUSSIAN_TAPS.length; t++)
+						sum += GAUSSIAN_TAPS[t] * (p[row + Math.max(0, Math.min(sw - 1, c + t - 2))] & 0xFF);
+					rows[out + x] = sum;
+				}
+			}
+		}
+		for (int y = 0; y < dh; y++) {
+			// the five rows under the taps, clamped to the level
+			int r0 = Math.max(0, 2 * y - 2) * dw;
+			int r1 = Math.max(0, 2 * y - 1) * dw;
+			int r2 = 2 * y * dw;
+			int r3 = Math.min(sh - 1, 2 * y + 1) * dw;
+			int r4 = Math.min(sh - 1, 2 * y + 2) * dw;
+			int out = dst + y * dw;
+			for (int x = 0; x < dw; x++) {
+				int sum = rows[r0 + x] + 4 * rows[r1 + x] + 6 * rows[r2 + x] + 4 * rows[r3 + x] + rows[r4 + x];
+				p[out + x] = (byte) ((sum + 128) >> 8);
+			}
+		}
+	}
+}
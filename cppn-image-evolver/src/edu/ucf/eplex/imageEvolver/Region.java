@@ -59,4 +59,56 @@ public class Region {
 		return Math.round( (long) total/f_area);
 	}
 
+	/**
+	 * @param integral summed-area tables of an image containing this region
+	 * @return <code>getValue(int[], int)</code> of the image, in constant time
+	 */
+	public int getValue(IntegralImage integral) {
+		return (int) (getSum(integral) / f_area);
+	}
+
+	/**
+	 * @param integral summed-area tables of an image containing this region
+	 * @return the sum of the gray levels in this region
+	 */
+	public long getSum(IntegralImage integral) {
+		return integral.sum(f_x, f_y, f_width, f_height);
+	}
+
+	/**
+	 * @param integral summed-area tables of an image containing this region
+	 * @return the mean gray level in this region
+	 */
+	public double getMean(IntegralImage integral) {
+		return integral.mean(f_x, f_y, f_width, f_height);
+	}
+
+	/**
+	 * @param integral summed-area tables of an image containing this region
+	 * @return the variance of the gray levels in this region
+	 */
+	public double getVariance(IntegralImage integral) {
+		return integral.variance(f_x, f_y, f_width, f_height);
+	}
+
+	public int getX() {
+		return f_x;
+	}
+
+	public int getY() {
+		return f_y;
+	}
+
+	public int getWidth() {
+		return f_width;
+	}
+
+	public int getHeight() {
+		return f_height;
+	}
+
+	public int getArea() {
+		return f_area;
+	}
+
 }
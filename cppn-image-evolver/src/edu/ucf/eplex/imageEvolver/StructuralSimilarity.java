@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2010 Brian Woolley
+ *
+ * This file is part of the octopusArm simulator.
+ *
+ * The octopusArm simulator is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ */
+package edu.ucf.eplex.imageEvolver;
+
+/**
+ * Mean structural similarity (SSIM) of two grayscale images over every <code>window</code> by
+ * <code>window</code> window:
+ * <pre>
+ *   SSIM(x, y) = (2 mx my + C1)(2 cxy + C2) / ((mx^2 + my^2 + C1)(vx + vy + C2))
+ * </pre>
+ * with <code>m</code> the means, <code>v</code> the variances and <code>cxy</code> the
+ * covariance of the gray levels in the window, <code>C1 = (0.01 * 255)^2</code> and
+ * <code>C2 = (0.03 * 255)^2</code>. The window sums come from summed-area tables of x, x^2,
+ * y, y^2 and xy, so the cost is one pass over the pixels whatever the window size.
+ * <p>
+ * The table of products is kept from comparison to comparison; an instance is not thread
+ * safe.
+ */
+public class StructuralSimilarity {
+
+	/** default width and height of the windows */
+	public static final int DEFAULT_WINDOW = 8;
+
+	private static final double C1 = (0.01 * 255) * (0.01 * 255);
+
+	private static final double C2 = (0.03 * 255) * (0.03 * 255);
+
+	private final int window;
+
+	/**
+	 * @param window width and height of the windows; images smaller than that are compared in
+	 * windows as large as they are
+	 */
+	public StructuralSimilarity(int window) {
+		if (window < 1) throw new IllegalArgumentException("window must be >= 1");
+		this.window = window;
+	}
+
+	public int getWindow() {
+		return window;
+	}
+
+	/**
+	 * @param x an image
+	 * @param xIntegral the summed-area tables of <code>x</code>; their table of products is
+	 * replaced with that of <code>x</code> and <code>y</code>
+	 * @param y an image of the same size
+	 * @param yIntegral the summed-area tables of <code>y</code>
+	 * @return the mean SSIM over every window, in [-1, 1]; 1 if the images are the same
+	 */
+	public double compute(GrayscaleImage x, IntegralImage xIntegral, GrayscaleImage y, IntegralImage yIntegral) {
+		xIntegral.computeProducts(x, y);
+		int w = x.getWidth();
+		int h = x.getHeight();
+		int k = Math.min(window, Math.min(w, h));
+		int scan = w + 1;
+		long[] sx = xIntegral.getSums(), sxx = xIntegral.getSquares(), sxy = xIntegral.getProducts();
+		long[] sy = yIntegral.getSums(), syy = yIntegral.getSquares();
+		double n = k * k;
+		double total = 0.0;
+		for (int j = 0; j + k <= h; j++) {
+			int top = j * scan;
+			int bottom = (j + k) * scan;
+			for (int i = 0; i + k <= w; i++) {
+				int a = top + i, b = top + i + k, c = bottom + i, d = bottom + i + k;
+				double mx = (sx[d] - sx[c] - sx[b] + sx[a]) / n;
+				double my = (sy[d] - sy[c] - sy[b] + sy[a]) / n;
+				double vx = (sxx[d] - sxx[c] - sxx[b] + sxx[a]) / n - mx * mx;
+				double vy = (syy[d] - syy[c] - syy[b] + syy[a]) / n - my * my;
+				double cxy = (sxy[d] - sxy[c] - sxy[b] + sxy[a]) / n - mx * my;
+				total += ((2 * mx * my + C1) * (2 * cxy + C2)) / ((mx * mx + my * my + C1) * (vx + vy + C2));
+			}
+		}
+		return total / ((w - k + 1) * (h - k + 1));
+	}
+}
@@ -1,11 +0,0 @@
-package edu.ucf.eplex.imageEvolver.jai;
-
-public class JAI {
-
-	public static PlanarImage create(String string, PlanarImage img,
-			KernelJAI kernH, KernelJAI kernV) {
-		// TODO Auto-generated method stub
-		return null;
-	}
-
-}
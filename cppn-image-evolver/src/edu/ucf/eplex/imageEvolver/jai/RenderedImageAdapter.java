@@ -1,39 +0,0 @@
-/**
- * Copyright (C) 2010 Brian Woolley
- * 
- * This file is part of the octopusArm simulator.
- * 
- * The octopusArm simulator is free software; you can redistribute it and/or modify it under the
- * terms of the GNU General Public License as published by the Free Software Foundation; either
- * version 2 of the License, or (at your option) any later version.
- * 
- * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
- * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
- * See the GNU General Public License for more details.
- * 
- * You should have received a copy of the GNU General Public License along with this program; if
- * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
- * 02111-1307 USA
- * 
- * created by Brian Woolley on Nov 20, 2010
- */
-package edu.ucf.eplex.imageEvolver.jai;
-
-import java.awt.image.BufferedImage;
-
-/**
- * @author Brian Woolley on Nov 20, 2010
- *
- */
-public class RenderedImageAdapter implements PlanarImage {
-
-	public RenderedImageAdapter(BufferedImage anImage) {
-		// TODO Auto-generated constructor stub
-	}
-
-	public BufferedImage getAsBufferedImage() {
-		// TODO Auto-generated method stub
-		return null;
-	}
-
-}
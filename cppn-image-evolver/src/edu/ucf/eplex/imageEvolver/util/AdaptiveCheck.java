@@ -0,0 +1,151 @@
+/**
+ * Copyright (C) 2010 Brian Woolley
+ *
+ * This file is part of the octopusArm simulator.
+ *
+ * The octopusArm simulator is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ */
+package edu.ucf.eplex.imageEvolver.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jgap.Chromosome;
+import org.jgap.Configuration;
+
+import com.anji.Copyright;
+import com.anji.neat.NeatConfiguration;
+import com.anji.neat.NeatIdMap;
+import com.anji.nn.NetOptimizer;
+import com.anji.persistence.FilePersistence;
+import com.anji.persistence.Persistence;
+import com.anji.util.DummyConfiguration;
+import com.anji.util.Properties;
+
+import edu.ucf.eplex.imageEvolver.GrayscaleImage;
+import edu.ucf.eplex.imageEvolver.ImageRenderer;
+import edu.ucf.eplex.picbreeder.DefaultParameters;
+import edu.ucf.eplex.picbreeder.ParameterTableInstance;
+
+/**
+ * Benchmarks adaptive rendering (see <code>ImageRenderer.setAdaptive()</code>) against
+ * rendering every pixel. Every chromosome given on the command line, or else every chromosome
+ * stored under <code>persistence.base.dir</code>, is rendered both ways and compared pixel for
+ * pixel. The tool prints the share of pixels whose networks were evaluated, the number of tile
+ * bounds computed per image, and the mean time per image of each renderer, and fails if any
+ * pixel differs.
+ */
+public class AdaptiveCheck {
+
+	private static final String CHROMOSOME_PREFIX = "chromosome";
+
+	private static final String CHROMOSOME_SUFFIX = ".xml";
+
+	private static final int TIMING_REPEATS = 5;
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) throws Exception {
+
+		System.out.println( Copyright.STRING );
+
+		if ( args.length < 1 ) {
+			System.err.println( "usage: <cmd> <properties-file> [<chromosome-ID>...]" );
+			System.exit( -1 );
+		}
+
+		Properties props = new Properties();
+		props.loadFromResource( args[ 0 ] );
+		// only read the database, never store IDs over those of its run
+		props.remove( NeatConfiguration.ID_FACTORY_KEY );
+		props.remove( NeatIdMap.NEAT_ID_MAP_FILE_KEY );
+
+		// load chromosomes from XML
+		Persistence db = (Persistence) props.newObjectProperty( Persistence.PERSISTENCE_CLASS_KEY );
+		Configuration config = new DummyConfiguration();
+		List<String> ids = new ArrayList<String>();
+		for (int i=1; i<args.length; i++)
+			ids.add(args[ i ]);
+		if (ids.isEmpty()) {
+			File dir = new File(props.getProperty( "persistence." + FilePersistence.BASE_DIR_KEY ), CHROMOSOME_PREFIX);
+			String[] names = dir.list();
+			if (names == null) throw new IllegalArgumentException( "no chromosomes found in " + dir );
+			for (String name : names) {
+				if (name.startsWith(CHROMOSOME_PREFIX) && name.endsWith(CHROMOSOME_SUFFIX))
+					ids.add(name.substring(CHROMOSOME_PREFIX.length(), name.length() - CHROMOSOME_SUFFIX.length()));
+			}
+		}
+		List<Chromosome> chroms = new ArrayList<Chromosome>();
+		for (String id : ids) {
+			Chromosome chrom = db.loadChromosome( id, config );
+			if ( chrom == null ) throw new IllegalArgumentException( "no chromosome found: " + id );
+			chroms.add( chrom );
+		}
+
+		ParameterTableInstance.set(new DefaultParameters());
+		int height = props.getIntProperty( "imageEvolver.height", ParameterTableInstance.get().getInteger("display", "height") );
+		int width = props.getIntProperty( "imageEvolver.width", ParameterTableInstance.get().getInteger("display", "width") );
+
+		ImageRenderer exhaustive = new ImageRenderer(width, height, ImageRenderer.MODE_PLANE);
+		exhaustive.setOptimizer(new NetOptimizer());
+		exhaustive.setSeparable(false);
+		ImageRenderer adaptive = new ImageRenderer(width, height, ImageRenderer.MODE_PLANE);
+		adaptive.setOptimizer(new NetOptimizer());
+		adaptive.setAdaptive(true);
+
+		System.out.println(chroms.size() + " chromosomes at " + width + "x" + height);
+		long pixels = 0;
+		int images = 0;
+		for (Chromosome c : chroms) {
+			GrayscaleImage expected = exhaustive.render(c);
+			GrayscaleImage actual = adaptive.render(c);
+			if (!expected.equals(actual)) {
+				images++;
+				for (int p = 0; p < width * height; p++) {
+					if (actual.get(p) != expected.get(p)) pixels++;
+				}
+				System.out.println("chromosome " + c.getId() + " differs");
+			}
+		}
+
+		double exhaustiveMillis = time(exhaustive, chroms);
+		adaptive.resetAdaptiveCounts();
+		double adaptiveMillis = time(adaptive, chroms);
+		System.out.println("exhaustive: " + String.format("%.3f", exhaustiveMillis) + " ms/image");
+		System.out.println("adaptive: " + String.format("%.3f", adaptiveMillis) + " ms/image, "
+				+ String.format("%.1f", 100.0 * adaptive.getEvaluatedPixels() / adaptive.getAdaptivePixels())
+				+ "% of pixels evaluated, " + adaptive.getTileBounds() / (TIMING_REPEATS * chroms.size())
+				+ " tile bounds per image");
+		ImageRenderer separable = new ImageRenderer(width, height, ImageRenderer.MODE_PLANE);
+		separable.setOptimizer(new NetOptimizer());
+		System.out.println("separable: " + String.format("%.3f", time(separable, chroms)) + " ms/image");
+		System.out.println(pixels + " pixels differ in " + images + " images");
+
+		System.out.println(pixels == 0 ? "PASS" : "FAIL");
+		if (pixels != 0) System.exit( 1 );
+	}
+
+	/**
+	 * @return mean time per image of <code>renderer</code> over <code>chroms</code>, in
+	 * milliseconds
+	 */
+	private static double time(ImageRenderer renderer, List<Chromosome> chroms) {
+		long start = System.nanoTime();
+		for (int r = 0; r < TIMING_REPEATS; r++)
+			for (Chromosome c : chroms)
+				renderer.render(c);
+		return (System.nanoTime() - start) / 1e6 / (TIMING_REPEATS * chroms.size());
+	}
+}
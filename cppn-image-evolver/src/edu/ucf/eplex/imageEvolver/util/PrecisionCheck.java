@@ -0,0 +1,178 @@
+/**
+ * Copyright (C) 2010 Brian Woolley
+ *
+ * This file is part of the octopusArm simulator.
+ *
+ * The octopusArm simulator is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ */
+package edu.ucf.eplex.imageEvolver.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jgap.Chromosome;
+import org.jgap.Configuration;
+
+import com.anji.Copyright;
+import com.anji.neat.NeatConfiguration;
+import com.anji.neat.NeatIdMap;
+import com.anji.nn.Precision;
+import com.anji.persistence.FilePersistence;
+import com.anji.persistence.Persistence;
+import com.anji.util.DummyConfiguration;
+import com.anji.util.Properties;
+
+import edu.ucf.eplex.imageEvolver.FuzzyHammingDist;
+import edu.ucf.eplex.imageEvolver.GrayscaleImage;
+import edu.ucf.eplex.imageEvolver.ImageRenderer;
+import edu.ucf.eplex.picbreeder.DefaultParameters;
+import edu.ucf.eplex.picbreeder.ParameterTableInstance;
+
+/**
+ * Reports how rendering and grayscale fitness diverge from double precision in each reduced
+ * <code>Precision</code>. The first target named by <code>imageEvolver.target</code> and every
+ * chromosome given on the command line, or else every chromosome stored under
+ * <code>persistence.base.dir</code>, are rendered and compared with
+ * <code>FuzzyHammingDist</code> in each precision, the target being rendered in the same
+ * precision as the subjects. For each precision the tool prints the number of pixels that
+ * differ from the double precision images, the largest and mean fitness difference, the
+ * number of pairs of chromosomes whose fitness order is reversed, and the mean time per image.
+ */
+public class PrecisionCheck {
+
+	private static final String CHROMOSOME_PREFIX = "chromosome";
+
+	private static final String CHROMOSOME_SUFFIX = ".xml";
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) throws Exception {
+
+		System.out.println( Copyright.STRING );
+
+		if ( args.length < 1 ) {
+			System.err.println( "usage: <cmd> <properties-file> [<chromosome-ID>...]" );
+			System.exit( -1 );
+		}
+
+		Properties props = new Properties();
+		props.loadFromResource( args[ 0 ] );
+		// only read the database, never store IDs over those of its run
+		props.remove( NeatConfiguration.ID_FACTORY_KEY );
+		props.remove( NeatIdMap.NEAT_ID_MAP_FILE_KEY );
+
+		// load chromosomes from XML
+		Persistence db = (Persistence) props.newObjectProperty( Persistence.PERSISTENCE_CLASS_KEY );
+		Configuration config = new DummyConfiguration();
+		String target = props.getProperty( "imageEvolver.target", "94" ).split(",")[0];
+		Chromosome targetChrom = db.loadTargetChromosome( target, config );
+		if ( targetChrom == null ) throw new IllegalArgumentException( "no target chromosome found: " + target );
+
+		List<String> ids = new ArrayList<String>();
+		for (int i=1; i<args.length; i++)
+			ids.add(args[ i ]);
+		if (ids.isEmpty()) {
+			File dir = new File(props.getProperty( "persistence." + FilePersistence.BASE_DIR_KEY ), CHROMOSOME_PREFIX);
+			String[] names = dir.list();
+			if (names == null) throw new IllegalArgumentException( "no chromosomes found in " + dir );
+			for (String name : names) {
+				if (name.startsWith(CHROMOSOME_PREFIX) && name.endsWith(CHROMOSOME_SUFFIX))
+					ids.add(name.substring(CHROMOSOME_PREFIX.length(), name.length() - CHROMOSOME_SUFFIX.length()));
+			}
+		}
+		List<Chromosome> chroms = new ArrayList<Chromosome>();
+		for (String id : ids) {
+			Chromosome chrom = db.loadChromosome( id, config );
+			if ( chrom == null ) throw new IllegalArgumentException( "no chromosome found: " + id );
+			chroms.add( chrom );
+		}
+
+		FuzzyHammingDist ff = new FuzzyHammingDist();
+		ff.init(props);
+
+		ParameterTableInstance.set(new DefaultParameters());
+		int height = props.getIntProperty( "imageEvolver.height", ParameterTableInstance.get().getInteger("display", "height") );
+		int width = props.getIntProperty( "imageEvolver.width", ParameterTableInstance.get().getInteger("display", "width") );
+
+		System.out.println(chroms.size() + " chromosomes against target " + target);
+		GrayscaleImage[] referenceImages = null;
+		int[] referenceFitness = null;
+		for (Precision precision : Precision.values()) {
+			ImageRenderer renderer = new ImageRenderer(width, height);
+			renderer.setPrecision(precision);
+
+			GrayscaleImage targetPixels = renderer.render(targetChrom);
+			double grayValue = targetPixels.getMax();
+			double[] targetSet = normalize(targetPixels, grayValue);
+
+			GrayscaleImage[] images = new GrayscaleImage[chroms.size()];
+			int[] fitness = new int[chroms.size()];
+			for (int c = 0; c < chroms.size(); c++)
+				images[c] = renderer.render(chroms.get(c));
+			long start = System.nanoTime();
+			for (Chromosome c : chroms)
+				renderer.render(c);
+			double millis = (System.nanoTime() - start) / 1e6 / chroms.size();
+			for (int c = 0; c < chroms.size(); c++) {
+				double[] subjectSet = normalize(images[c], grayValue);
+				switch (precision) {
+				case FLOAT: fitness[c] = ff.evaluate(Precision.toFloat(subjectSet), Precision.toFloat(targetSet)); break;
+				case FIXED: fitness[c] = ff.evaluateFixed(Precision.toFixed(subjectSet), Precision.toFixed(targetSet)); break;
+				default: fitness[c] = ff.evaluate(subjectSet, targetSet);
+				}
+			}
+			if (referenceImages == null) {
+				referenceImages = images;
+				referenceFitness = fitness;
+			}
+
+			long pixels = 0;
+			int maxPixelError = 0;
+			int maxFitnessError = 0;
+			long totalFitnessError = 0;
+			int reversed = 0;
+			for (int c = 0; c < chroms.size(); c++) {
+				for (int p = 0; p < width * height; p++) {
+					int error = Math.abs(images[c].get(p) - referenceImages[c].get(p));
+					if (error > 0) pixels++;
+					maxPixelError = Math.max(maxPixelError, error);
+				}
+				int error = Math.abs(fitness[c] - referenceFitness[c]);
+				maxFitnessError = Math.max(maxFitnessError, error);
+				totalFitnessError += error;
+				for (int d = 0; d < c; d++) {
+					if (Integer.signum(fitness[c] - fitness[d]) != Integer.signum(referenceFitness[c] - referenceFitness[d]))
+						reversed++;
+				}
+			}
+			System.out.println(precision + ": " + pixels + " pixels differ (max " + maxPixelError + "), fitness error max "
+					+ maxFitnessError + " mean " + String.format("%.2f", (double) totalFitnessError / chroms.size())
+					+ " of " + ff.getMaxFitness() + ", " + reversed + " pairs reordered, "
+					+ String.format("%.3f", millis) + " ms/image");
+		}
+	}
+
+	/**
+	 * Scales gray levels as <code>ImageEvolver</code> does before comparing them.
+	 */
+	private static double[] normalize(GrayscaleImage input, double threshold) {
+		double[] output = new double[input.getPixels().length];
+		if (threshold > 0.0) {
+			for (int i=0; i<output.length; i++)
+				output[i] = (double) input.get(i)/threshold;
+		}
+		return output;
+	}
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright (C) 2010 Brian Woolley
+ *
+ * This file is part of the octopusArm simulator.
+ *
+ * The octopusArm simulator is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ */
+package edu.ucf.eplex.imageEvolver.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jgap.Chromosome;
+import org.jgap.Configuration;
+
+import com.anji.Copyright;
+import com.anji.neat.NeatConfiguration;
+import com.anji.neat.NeatIdMap;
+import com.anji.persistence.FilePersistence;
+import com.anji.persistence.Persistence;
+import com.anji.util.DummyConfiguration;
+import com.anji.util.Properties;
+
+import edu.ucf.eplex.imageEvolver.FuzzyHammingDist;
+import edu.ucf.eplex.imageEvolver.GrayscaleImage;
+import edu.ucf.eplex.imageEvolver.ImageRenderer;
+import edu.ucf.eplex.imageEvolver.Pyramid;
+import edu.ucf.eplex.picbreeder.DefaultParameters;
+import edu.ucf.eplex.picbreeder.ParameterTableInstance;
+
+/**
+ * Times multi-scale fitness against single-scale fitness, as <code>ImageEvolver</code> scores
+ * the <code>pyramid</code> and <code>pixels</code> features in double precision. The first
+ * target named by <code>imageEvolver.target</code> and every chromosome given on the command
+ * line, or else every chromosome stored under <code>persistence.base.dir</code>, are rendered
+ * once; then each image is scored repeatedly against the target at full resolution only, and
+ * with a box and a Gaussian pyramid of <code>imageEvolver.pyramid.weights</code> levels
+ * (default 4, equally weighted). For each the tool prints the mean time per image of building
+ * the subject pyramid and of scoring it, and the mean fitness.
+ */
+public class PyramidBenchmark {
+
+	private static final String CHROMOSOME_PREFIX = "chromosome";
+
+	private static final String CHROMOSOME_SUFFIX = ".xml";
+
+	private static final int REPETITIONS = 200;
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) throws Exception {
+
+		System.out.println( Copyright.STRING );
+
+		if ( args.length < 1 ) {
+			System.err.println( "usage: <cmd> <properties-file> [<chromosome-ID>...]" );
+			System.exit( -1 );
+		}
+
+		Properties props = new Properties();
+		props.loadFromResource( args[ 0 ] );
+		// only read the database, never store IDs over those of its run
+		props.remove( NeatConfiguration.ID_FACTORY_KEY );
+		props.remove( NeatIdMap.NEAT_ID_MAP_FILE_KEY );
+
+		// load chromosomes from XML
+		Persistence db = (Persistence) props.newObjectProperty( Persistence.PERSISTENCE_CLASS_KEY );
+		Configuration config = new DummyConfiguration();
+		String target = props.getProperty( "imageEvolver.target", "94" ).split(",")[0];
+		Chromosome targetChrom = db.loadTargetChromosome( target, config );
+		if ( targetChrom == null ) throw new IllegalArgumentException( "no target chromosome found: " + target );
+
+		List<String> ids = new ArrayList<String>();
+		for (int i=1; i<args.length; i++)
+			ids.add(args[ i ]);
+		if (ids.isEmpty()) {
+			File dir = new File(props.getProperty( "persistence." + FilePersistence.BASE_DIR_KEY ), CHROMOSOME_PREFIX);
+			String[] names = dir.list();
+			if (names == null) throw new IllegalArgumentException( "no chromosomes found in " + dir );
+			for (String name : names) {
+				if (name.startsWith(CHROMOSOME_PREFIX) && name.endsWith(CHROMOSOME_SUFFIX))
+					ids.add(name.substring(CHROMOSOME_PREFIX.length(), name.length() - CHROMOSOME_SUFFIX.length()));
+			}
+		}
+		List<Chromosome> chroms = new ArrayList<Chromosome>();
+		for (String id : ids) {
+			Chromosome chrom = db.loadChromosome( id, config );
+			if ( chrom == null ) throw new IllegalArgumentException( "no chromosome found: " + id );
+			chroms.add( chrom );
+		}
+
+		FuzzyHammingDist ff = new FuzzyHammingDist();
+		ff.init(props);
+
+		String[] weightNames = props.getProperty( "imageEvolver.pyramid.weights", "1,1,1,1" ).split(",");
+		double[] weights = new double[weightNames.length];
+		for (int l = 0; l < weights.length; l++)
+			weights[l] = Double.parseDouble( weightNames[l].trim() );
+
+		ParameterTableInstance.set(new DefaultParameters());
+		int height = props.getIntProperty( "imageEvolver.height", ParameterTableInstance.get().getInteger("display", "height") );
+		int width = props.getIntProperty( "imageEvolver.width", ParameterTableInstance.get().getInteger("display", "width") );
+
+		ImageRenderer renderer = new ImageRenderer(width, height);
+		GrayscaleImage targetPixels = renderer.render(targetChrom);
+		double threshold = targetPixels.getMax();
+		GrayscaleImage[] images = new GrayscaleImage[chroms.size()];
+		for (int c = 0; c < chroms.size(); c++)
+			images[c] = renderer.render(chroms.get(c));
+
+		System.out.println(chroms.size() + " chromosomes against target " + target + " at " + width + "x" + height
+				+ ", " + REPETITIONS + " repetitions");
+
+		// warm up the compiler on every path timed
+		for (int r = 0; r < REPETITIONS; r++) {
+			for (GrayscaleImage image : images)
+				ff.evaluate(image.getPixels(), targetPixels.getPixels(), threshold);
+			for (Pyramid.Filter filter : Pyramid.Filter.values()) {
+				Pyramid pyramid = new Pyramid(filter, weights.length);
+				for (GrayscaleImage image : images)
+					score(ff, pyramid, pyramid.build(image).getPixels(), pyramid.getImage().getPixels(), threshold, weights);
+			}
+		}
+
+		// single scale: the pixels feature
+		long fitness = 0;
+		long start = System.nanoTime();
+		for (int r = 0; r < REPETITIONS; r++) {
+			fitness = 0;
+			for (GrayscaleImage image : images)
+				fitness += ff.evaluate(image.getPixels(), targetPixels.getPixels(), threshold);
+		}
+		double millis = (System.nanoTime() - start) / 1e6 / REPETITIONS / images.length;
+		System.out.println("single scale: " + String.format("%.4f", millis) + " ms/image scoring, mean fitness "
+				+ fitness / images.length);
+
+		for (Pyramid.Filter filter : Pyramid.Filter.values()) {
+			Pyramid targetPyramid = new Pyramid(filter, weights.length);
+			byte[] targetLevels = targetPyramid.build(targetPixels).getPixels();
+			Pyramid pyramid = new Pyramid(filter, weights.length);
+			long building = 0, scoring = 0;
+			for (int r = 0; r < REPETITIONS; r++) {
+				fitness = 0;
+				for (GrayscaleImage image : images) {
+					long t0 = System.nanoTime();
+					byte[] levels = pyramid.build(image).getPixels();
+					long t1 = System.nanoTime();
+					fitness += score(ff, pyramid, levels, targetLevels, threshold, weights);
+					building += t1 - t0;
+					scoring += System.nanoTime() - t1;
+				}
+			}
+			double count = (double) REPETITIONS * images.length;
+			System.out.println(filter + " pyramid of " + pyramid.getLevels() + " levels: "
+					+ String.format("%.4f", building / 1e6 / count) + " ms/image building, "
+					+ String.format("%.4f", scoring / 1e6 / count) + " ms/image scoring, mean fitness "
+					+ fitness / images.length);
+		}
+	}
+
+	/**
+	 * Scores each level as <code>ImageEvolver</code> does, and weighs the scores.
+	 */
+	private static int score(FuzzyHammingDist ff, Pyramid pyramid, byte[] levels, byte[] targetLevels, double threshold, double[] weights) {
+		double fitness = 0.0, total = 0.0;
+		for (int l = 0; l < pyramid.getLevels() && l < weights.length; l++) {
+			int from = pyramid.getOffset(l), size = pyramid.getSize(l);
+			fitness += weights[l] * ff.score(ff.accumulate(levels, targetLevels, threshold, from, from + size), levels, targetLevels, threshold, from, from + size);
+			total += weights[l];
+		}
+		return (total > 0.0) ? (int) Math.round(fitness / total) : 0;
+	}
+}
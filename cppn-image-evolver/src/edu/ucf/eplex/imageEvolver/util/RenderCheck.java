@@ -0,0 +1,300 @@
+/**
+ * Copyright (C) 2010 Brian Woolley
+ *
+ * This file is part of the octopusArm simulator.
+ *
+ * The octopusArm simulator is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ */
+package edu.ucf.eplex.imageEvolver.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.jgap.Allele;
+import org.jgap.Chromosome;
+import org.jgap.ChromosomeMaterial;
+import org.jgap.Configuration;
+
+import com.anji.Copyright;
+import com.anji.activationFunction.ActivationApproximation;
+import com.anji.activationFunction.ActivationOpcodes;
+import com.anji.activationFunction.PlaneKernels;
+import com.anji.neat.ConnectionAllele;
+import com.anji.neat.NeatConfiguration;
+import com.anji.neat.NeatIdMap;
+import com.anji.nn.NetOptimizer;
+import com.anji.persistence.Persistence;
+import com.anji.util.DummyConfiguration;
+import com.anji.util.Properties;
+
+import edu.ucf.eplex.imageEvolver.GrayscaleImage;
+import edu.ucf.eplex.imageEvolver.ImageRenderer;
+import edu.ucf.eplex.picbreeder.DefaultParameters;
+import edu.ucf.eplex.picbreeder.ParameterTableInstance;
+
+/**
+ * Validates the rendering back ends against each other. Each <code>PlaneKernels</code>
+ * activation is compared bitwise with the scalar <code>ActivationOpcodes</code> path, then the
+ * target chromosomes named by <code>imageEvolver.target</code> and any chromosomes given on the
+ * command line are rendered in every mode and compared pixel for pixel with
+ * <code>MODE_PIXEL</code>, reporting the mean time per image and what the
+ * <code>NetOptimizer</code> removed. Variants of each chromosome with some weights halved are
+ * rendered in lockstep with it. Approximate activation functions must stay within their
+ * documented error and change no pixel by more than one gray level.
+ */
+public class RenderCheck {
+
+	private static final int KERNEL_SAMPLES = 100000;
+
+	private static final int TIMING_REPEATS = 5;
+
+	private static final int THREADS = 4;
+
+	/** number of variants of each chromosome rendered in lockstep with it */
+	private static final int VARIANTS = 3;
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) throws Exception {
+
+		System.out.println( Copyright.STRING );
+
+		if ( args.length < 1 ) {
+			System.err.println( "usage: <cmd> <properties-file> [<chromosome-ID>...]" );
+			System.exit( -1 );
+		}
+
+		Properties props = new Properties();
+		props.loadFromResource( args[ 0 ] );
+		// only read the database, never store IDs over those of its run
+		props.remove( NeatConfiguration.ID_FACTORY_KEY );
+		props.remove( NeatIdMap.NEAT_ID_MAP_FILE_KEY );
+
+		// load chromosomes from XML
+		Persistence db = (Persistence) props.newObjectProperty( Persistence.PERSISTENCE_CLASS_KEY );
+		Configuration config = new DummyConfiguration();
+		List<Chromosome> chroms = new ArrayList<Chromosome>();
+		for (String target : props.getProperty( "imageEvolver.target", "94" ).split(",")) {
+			Chromosome chrom = db.loadTargetChromosome( target, config );
+			if ( chrom == null ) throw new IllegalArgumentException( "no target chromosome found: " + target );
+			chroms.add( chrom );
+		}
+		for (int i=1; i<args.length; i++) {
+			Chromosome chrom = db.loadChromosome( args[ i ], config );
+			if ( chrom == null ) throw new IllegalArgumentException( "no chromosome found: " + args[ i ] );
+			chroms.add( chrom );
+		}
+
+		boolean pass = checkKernels();
+		pass &= checkApproximation(ActivationApproximation.TABLE, 1.1e-6);
+		pass &= checkApproximation(ActivationApproximation.POLY, 1e-8);
+
+		ParameterTableInstance.set(new DefaultParameters());
+		int height = props.getIntProperty( "imageEvolver.height", ParameterTableInstance.get().getInteger("display", "height") );
+		int width = props.getIntProperty( "imageEvolver.width", ParameterTableInstance.get().getInteger("display", "width") );
+
+		ImageRenderer reference = new ImageRenderer(width, height, ImageRenderer.MODE_PIXEL);
+		ImageRenderer scalar = new ImageRenderer(width, height, ImageRenderer.MODE_PLANE);
+		scalar.setPlaneKernels(false);
+		scalar.setSeparable(false);
+		ImageRenderer kernels = new ImageRenderer(width, height, ImageRenderer.MODE_PLANE);
+		kernels.setSeparable(false);
+		ImageRenderer separable = new ImageRenderer(width, height, ImageRenderer.MODE_PLANE);
+		ImageRenderer generated = new ImageRenderer(width, height, ImageRenderer.MODE_PLANE);
+		generated.setGenerateThreshold(1);
+		ImageRenderer threaded = new ImageRenderer(width, height, ImageRenderer.MODE_PLANE);
+		threaded.setThreads(THREADS);
+		ImageRenderer optimized = new ImageRenderer(width, height, ImageRenderer.MODE_PLANE);
+		optimized.setOptimizer(new NetOptimizer());
+		ImageRenderer merged = new ImageRenderer(width, height, ImageRenderer.MODE_PLANE);
+		merged.setOptimizer(new NetOptimizer(0.0, true));
+
+		List<GrayscaleImage> expected = new ArrayList<GrayscaleImage>();
+		for (Chromosome c : chroms)
+			expected.add(reference.render(c));
+
+		pass &= checkRenderer("pixel", reference, chroms, expected);
+		pass &= checkRenderer("plane (scalar)", scalar, chroms, expected);
+		pass &= checkRenderer("plane (kernels)", kernels, chroms, expected);
+		pass &= checkRenderer("separable", separable, chroms, expected);
+		pass &= checkRenderer("generated", generated, chroms, expected);
+		pass &= checkRenderer("separable (" + THREADS + " threads)", threaded, chroms, expected);
+		pass &= checkRenderer("optimized", optimized, chroms, expected);
+		pass &= checkRenderer("optimized (merged)", merged, chroms, expected);
+		// variants of each chromosome with some weights changed, rendered in lockstep with it
+		List<Chromosome> variants = new ArrayList<Chromosome>();
+		List<GrayscaleImage> variantsExpected = new ArrayList<GrayscaleImage>();
+		Random random = new Random(0);
+		for (int i = 0; i < chroms.size(); i++) {
+			variants.add(chroms.get(i));
+			variantsExpected.add(expected.get(i));
+			for (int v = 0; v < VARIANTS; v++) {
+				ChromosomeMaterial material = chroms.get(i).cloneMaterial();
+				for (Allele allele : material.getAlleles()) {
+					if (allele instanceof ConnectionAllele && random.nextBoolean()) {
+						ConnectionAllele connection = (ConnectionAllele) allele;
+						connection.setWeight(connection.getWeight() * 0.5);
+					}
+				}
+				Chromosome variant = new Chromosome(material, new Long(-1 - variants.size()));
+				variants.add(variant);
+				variantsExpected.add(reference.render(variant));
+			}
+		}
+		ImageRenderer lockstep = new ImageRenderer(width, height, ImageRenderer.MODE_PLANE);
+		lockstep.setOptimizer(new NetOptimizer());
+		pass &= checkLockstep("lockstep", lockstep, variants, variantsExpected);
+		ImageRenderer lockstepPlanes = new ImageRenderer(width, height, ImageRenderer.MODE_PLANE);
+		lockstepPlanes.setSeparable(false);
+		lockstepPlanes.setThreads(THREADS);
+		pass &= checkLockstep("lockstep (plane, " + THREADS + " threads)", lockstepPlanes, variants, variantsExpected);
+
+		for (ActivationApproximation a : new ActivationApproximation[] { ActivationApproximation.TABLE, ActivationApproximation.POLY }) {
+			ImageRenderer approximate = new ImageRenderer(width, height, ImageRenderer.MODE_PLANE);
+			approximate.setApproximation(a);
+			pass &= checkRenderer("approximation " + a, approximate, chroms, expected, 1);
+		}
+
+		System.out.println(pass ? "PASS" : "FAIL");
+		if (!pass) System.exit( 1 );
+	}
+
+	/**
+	 * Compares <code>PlaneKernels.apply()</code> with the clamped scalar activation for every
+	 * opcode, over random values in [-8, 8] plus zeros, infinities and NaN.
+	 * @return true if every value is bitwise identical
+	 */
+	private static boolean checkKernels() {
+		Random rand = new Random(0);
+		double[] input = new double[KERNEL_SAMPLES];
+		for (int i = 0; i < input.length; i++)
+			input[i] = rand.nextDouble() * 16.0 - 8.0;
+		double[] specials = { 0.0, -0.0, 1.0, -1.0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NaN, Double.MAX_VALUE, -Double.MAX_VALUE, Double.MIN_VALUE };
+		System.arraycopy(specials, 0, input, 0, specials.length);
+
+		boolean pass = true;
+		double[] plane = new double[input.length];
+		for (int opcode = 0; opcode < ActivationOpcodes.COUNT; opcode++) {
+			System.arraycopy(input, 0, plane, 0, input.length);
+			PlaneKernels.apply(opcode, plane, plane.length);
+			int mismatches = 0;
+			for (int i = 0; i < input.length; i++) {
+				double expected = Math.min(Math.max(ActivationOpcodes.valueAt(opcode, input[i]), -Double.MAX_VALUE), Double.MAX_VALUE);
+				if (Double.doubleToLongBits(expected) != Double.doubleToLongBits(plane[i])) mismatches++;
+			}
+			if (mismatches > 0) {
+				System.out.println("kernel " + opcode + ": " + mismatches + " mismatches");
+				pass = false;
+			}
+		}
+		System.out.println("kernels: " + (pass ? "bitwise identical" : "MISMATCH"));
+		return pass;
+	}
+
+	/**
+	 * Measures the maximum absolute error of <code>approximation</code> for every opcode over
+	 * [-50, 50] and at large arguments.
+	 * @param approximation
+	 * @param bound documented maximum absolute error
+	 * @return true if no error exceeds <code>bound</code>
+	 */
+	private static boolean checkApproximation(ActivationApproximation approximation, double bound) {
+		boolean pass = true;
+		Random rand = new Random(0);
+		for (int opcode = 0; opcode < ActivationOpcodes.COUNT; opcode++) {
+			if (!approximation.approximates(opcode)) continue;
+			double maxError = 0;
+			for (int i = 0; i < KERNEL_SAMPLES * 10; i++) {
+				double x = (i % 10 == 0) ? (rand.nextDouble() * 2e6 - 1e6) : rand.nextDouble() * 100.0 - 50.0;
+				maxError = Math.max(maxError, Math.abs(approximation.valueAt(opcode, x) - ActivationOpcodes.valueAt(opcode, x)));
+			}
+			if (!(maxError <= bound)) {
+				System.out.println("approximation " + approximation + " of " + opcode + ": error " + maxError + " exceeds " + bound);
+				pass = false;
+			}
+			else System.out.println("approximation " + approximation + " of " + opcode + ": max error " + maxError);
+		}
+		return pass;
+	}
+
+	/**
+	 * @param name
+	 * @param renderer
+	 * @param chroms
+	 * @param expected reference image of each chromosome
+	 * @return true if every image matches its reference
+	 */
+	private static boolean checkRenderer(String name, ImageRenderer renderer, List<Chromosome> chroms, List<GrayscaleImage> expected) {
+		return checkRenderer(name, renderer, chroms, expected, 0);
+	}
+
+	/**
+	 * Like <code>checkRenderer()</code>, rendering all of <code>chroms</code> in one call so
+	 * that those of the same topology are rendered in lockstep.
+	 * @param expected reference image of each chromosome
+	 * @return true if every image matches its reference
+	 */
+	private static boolean checkLockstep(String name, ImageRenderer renderer, List<Chromosome> chroms, List<GrayscaleImage> expected) {
+		long pixels = 0;
+		List<GrayscaleImage> images = renderer.render(chroms);
+		for (int i = 0; i < chroms.size(); i++) {
+			byte[] actual = images.get(i).getPixels();
+			byte[] reference = expected.get(i).getPixels();
+			for (int p = 0; p < reference.length; p++) {
+				if (actual[p] != reference[p]) pixels++;
+			}
+		}
+
+		long start = System.nanoTime();
+		for (int r = 0; r < TIMING_REPEATS; r++)
+			renderer.render(chroms);
+		double millis = (System.nanoTime() - start) / 1e6 / (TIMING_REPEATS * chroms.size());
+
+		System.out.println(name + ": " + pixels + " pixels differ, " + String.format("%.3f", millis) + " ms/image");
+		return pixels == 0;
+	}
+
+	/**
+	 * @param name
+	 * @param renderer
+	 * @param chroms
+	 * @param expected reference image of each chromosome
+	 * @param tolerance largest acceptable difference in gray level
+	 * @return true if no pixel differs from its reference by more than <code>tolerance</code>
+	 */
+	private static boolean checkRenderer(String name, ImageRenderer renderer, List<Chromosome> chroms, List<GrayscaleImage> expected, int tolerance) {
+		long pixels = 0;
+		int maxError = 0;
+		for (int i = 0; i < chroms.size(); i++) {
+			GrayscaleImage actual = renderer.render(chroms.get(i));
+			GrayscaleImage reference = expected.get(i);
+			for (int p = 0; p < reference.getPixels().length; p++) {
+				int error = Math.abs(actual.get(p) - reference.get(p));
+				if (error > 0) pixels++;
+				maxError = Math.max(maxError, error);
+			}
+		}
+
+		long start = System.nanoTime();
+		for (int r = 0; r < TIMING_REPEATS; r++)
+			for (Chromosome c : chroms)
+				renderer.render(c);
+		double millis = (System.nanoTime() - start) / 1e6 / (TIMING_REPEATS * chroms.size());
+
+		System.out.println(name + ": " + pixels + " pixels differ (max " + maxError + "), " + String.format("%.3f", millis) + " ms/image");
+		if (renderer.getOptimizer() != null) System.out.println("  " + renderer.getOptimizer());
+		return maxError <= tolerance;
+	}
+}